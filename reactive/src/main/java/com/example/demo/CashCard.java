@@ -0,0 +1,11 @@
+package com.example.demo;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+/**
+ * Same JSON shape (id, amount, owner) as the servlet application's CashCard entity.
+ */
+@Table("cash_card")
+record CashCard(@Id Long id, Double amount, String owner) {
+}
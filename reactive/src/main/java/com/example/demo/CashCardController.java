@@ -0,0 +1,77 @@
+package com.example.demo;
+
+import java.security.Principal;
+import java.util.List;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * The /cashcards contract of the servlet application on WebFlux: every handler
+ * returns a Mono right away, nothing blocks the event loop while R2DBC talks to
+ * the database.
+ */
+@RestController
+@RequestMapping("/cashcards")
+class CashCardController {
+
+    private final CashCardRepository cashCardRepository;
+
+    CashCardController(CashCardRepository cashCardRepository) {
+        this.cashCardRepository = cashCardRepository;
+    }
+
+    @GetMapping("/{requestedId}")
+    private Mono<ResponseEntity<CashCard>> findById(@PathVariable Long requestedId, Principal principal) {
+        return cashCardRepository.findByIdAndOwner(requestedId, principal.getName())
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    /*
+    * Saving the new CashCard, owned by the Principal, and return its location.
+    */
+    @PostMapping
+    private Mono<ResponseEntity<Void>> createCashCard(@RequestBody CashCard cashCard, UriComponentsBuilder ucb, Principal principal) {
+        return cashCardRepository.save(new CashCard(null, cashCard.amount(), principal.getName()))
+                .map(saved -> ResponseEntity.created(ucb.path("/cashcards/{id}").buildAndExpand(saved.id()).toUri()).build());
+    }
+
+    /**
+     *
+     * @return a page of the Principal's CashCards, sorted ascending by amount unless asked otherwise
+     */
+    @GetMapping
+    private Mono<ResponseEntity<List<CashCard>>> getAllCashCards(Pageable pageable, Principal principal) {
+        return cashCardRepository.findByOwner(principal.getName(), PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(),
+                        pageable.getSortOr(Sort.by(Sort.Direction.ASC, "amount"))))
+                .collectList()
+                .map(ResponseEntity::ok);
+    }
+
+    @PutMapping("/{requestedId}")
+    private Mono<ResponseEntity<Void>> updateCashCard(@PathVariable Long requestedId, @RequestBody CashCard cashCardUpdate,
+            Principal principal) {
+        return cashCardRepository.updateAmountByIdAndOwner(requestedId, principal.getName(), cashCardUpdate.amount())
+                .<ResponseEntity<Void>>map(updated -> updated == 0 ? ResponseEntity.notFound().build() : ResponseEntity.noContent().build());
+    }
+
+    @DeleteMapping("/{requestedId}")
+    private Mono<ResponseEntity<Void>> deleteCashCard(@PathVariable Long requestedId, Principal principal) {
+        return cashCardRepository.deleteByIdAndOwner(requestedId, principal.getName())
+                .<ResponseEntity<Void>>map(deleted -> deleted == 0 ? ResponseEntity.notFound().build() : ResponseEntity.noContent().build());
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.demo;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.data.repository.reactive.ReactiveSortingRepository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+interface CashCardRepository extends ReactiveCrudRepository<CashCard, Long>, ReactiveSortingRepository<CashCard, Long> {
+
+    Mono<CashCard> findByIdAndOwner(Long id, String owner); //Filtering data access by CashCard owner, empty when it isn't the owner's
+
+    Flux<CashCard> findByOwner(String owner, Pageable pageable); //Filtering data access by CashCard owner, one page (limit/offset + sort)
+
+    /* Owner-checked single statements, 0 rows means the CashCard doesn't exist or isn't the owner's */
+    @Modifying
+    @Query("update cash_card set amount = :amount where id = :id and owner = :owner")
+    Mono<Integer> updateAmountByIdAndOwner(Long id, String owner, Double amount);
+
+    @Modifying
+    @Query("delete from cash_card where id = :id and owner = :owner")
+    Mono<Integer> deleteByIdAndOwner(Long id, String owner);
+}
+
+/*
+*NOTE: Spring Data will take care of the actual implementations (writing the SQL queries)
+ */
@@ -0,0 +1,14 @@
+package com.example.demo;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+
+
+@SpringBootApplication
+public class ReactiveCashcardApplication {
+
+	public static void main(String[] args) {
+		SpringApplication.run(ReactiveCashcardApplication.class, args);
+	}
+
+}
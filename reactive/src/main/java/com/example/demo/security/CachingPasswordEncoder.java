@@ -0,0 +1,110 @@
+package com.example.demo.security;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * PasswordEncoder that remembers, for a while, which raw password matched which
+ * encoded password, the reactive counterpart of the servlet application's
+ * CredentialCache.
+ *
+ * Entries are keyed by an HMAC-SHA256 of the encoded and the raw password under a
+ * key that is generated at startup and never leaves the process, so the raw
+ * password is never stored. The encoded password is salted, a changed password
+ * therefore never hits an old entry. Mismatches are never remembered.
+ */
+class CachingPasswordEncoder implements PasswordEncoder {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final PasswordEncoder delegate;
+    private final Map<ByteBuffer, Long> expiries = new ConcurrentHashMap<>();
+    private final SecretKeySpec key;
+    private final ThreadLocal<Mac> macs;
+    private final int maxEntries;
+    private final long ttlNanos;
+
+    CachingPasswordEncoder(PasswordEncoder delegate, int maxEntries, Duration ttl) {
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        this.delegate = delegate;
+        this.key = new SecretKeySpec(secret, ALGORITHM);
+        this.macs = ThreadLocal.withInitial(this::newMac);
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return delegate.encode(rawPassword);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        if (rawPassword == null || encodedPassword == null) {
+            return delegate.matches(rawPassword, encodedPassword);
+        }
+        ByteBuffer key = keyOf(rawPassword, encodedPassword);
+        Long expiresAt = expiries.get(key);
+        if (expiresAt != null) {
+            if (expiresAt - System.nanoTime() > 0) {
+                return true;
+            }
+            expiries.remove(key, expiresAt);
+        }
+        if (!delegate.matches(rawPassword, encodedPassword)) {
+            return false;
+        }
+        if (expiries.size() >= maxEntries) {
+            makeRoom();
+        }
+        expiries.put(key, System.nanoTime() + ttlNanos);
+        return true;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    /*
+     * Drops expired entries first and, if the cache is still full, an arbitrary one.
+     */
+    private void makeRoom() {
+        long now = System.nanoTime();
+        expiries.values().removeIf(expiresAt -> expiresAt - now <= 0);
+        Iterator<ByteBuffer> keys = expiries.keySet().iterator();
+        while (expiries.size() >= maxEntries && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    private ByteBuffer keyOf(CharSequence rawPassword, String encodedPassword) {
+        Mac mac = macs.get();
+        mac.update(encodedPassword.getBytes(StandardCharsets.UTF_8));
+        mac.update((byte) 0);
+        return ByteBuffer.wrap(mac.doFinal(rawPassword.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.demo.security;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.autoconfigure.security.reactive.EndpointRequest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.config.Customizer;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.core.userdetails.MapReactiveUserDetailsService;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+
+@Configuration
+@EnableWebFluxSecurity
+/*
+ * The servlet application's SecurityConfig in reactive form: same users, roles
+ * and rules, applied by a WebFilter chain instead of a servlet filter chain
+ */
+class SecurityConfig {
+
+  @Bean
+  /*
+   * All HTTP requests to cashcards/ endpoints are required to be authenticated
+   * using HTTP Basic Authentication security (username and password), by a CARD-OWNER.
+   * Also, do not require CSRF security.
+   */
+  SecurityWebFilterChain filterChain(ServerHttpSecurity http) {
+    http
+      .authorizeExchange(exchange ->
+        exchange.pathMatchers("/cashcards/**").hasRole("CARD-OWNER")
+          .matchers(EndpointRequest.to("health")).permitAll()
+          .matchers(EndpointRequest.toAnyEndpoint()).hasRole("ACTUATOR") /* metrics are for monitoring only */
+          .anyExchange().denyAll())
+      .csrf(csrf -> csrf.disable())
+      .httpBasic(Customizer.withDefaults());
+
+    return http.build();
+  }
+
+  @Bean
+  /*
+   * Added pre-defined users and roles for authentication and authorization
+   * management
+   */
+  MapReactiveUserDetailsService onlyTestUsers(PasswordEncoder encoder) {
+    User.UserBuilder users = User.builder();
+    UserDetails user = users
+      .username("LeudiX1")
+      .password(encoder.encode("leo123"))
+      .roles("CARD-OWNER")
+      .build();
+
+    UserDetails user2 = users
+      .username("Sarah")
+      .password(encoder.encode("sara123"))
+      .roles("CARD-OWNER")
+      .build();
+
+    UserDetails user3 = users
+      .username("Lucy2")
+      .password(encoder.encode("lucy123"))
+      .roles("NON-OWNER")
+      .build();
+
+    UserDetails monitoring = users
+      .username("Monitor")
+      .password(encoder.encode("monitor123"))
+      .roles("ACTUATOR")
+      .build();
+
+    return new MapReactiveUserDetailsService(user, user2, user3, monitoring);
+  }
+
+  /*
+   * Password encoder. BCrypt runs off the event loop (Spring Security hands it to a
+   * bounded elastic scheduler), successful checks are remembered when the cache is enabled
+   */
+  @Bean
+  PasswordEncoder passwordEncoder(@Value("${cashcard.security.credential-cache.enabled:true}") boolean cacheEnabled,
+      @Value("${cashcard.security.credential-cache.max-entries:10000}") int maxEntries,
+      @Value("${cashcard.security.credential-cache.ttl:5m}") Duration ttl) {
+    PasswordEncoder bcrypt = new BCryptPasswordEncoder();
+    return cacheEnabled ? new CachingPasswordEncoder(bcrypt, maxEntries, ttl) : bcrypt;
+  }
+}
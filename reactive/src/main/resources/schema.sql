@@ -0,0 +1,6 @@
+create table if not exists cash_card (
+    id bigint auto_increment primary key,
+    amount double not null,
+    owner varchar(256) not null
+);
+create index if not exists idx_cash_card_owner_amount_id on cash_card (owner, amount, id);
@@ -2,19 +2,41 @@ package com.example.demo;
 
 import java.io.Serializable;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.OptimizableGenerator;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
 import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table;
 
 @Entity
-@Table(name = "Cash_card")
-public class CashCard implements Serializable {
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.CASH_CARD_REGION) /* when enabled, see SecondLevelCacheConfig */
+@Table(name = "Cash_card", indexes = {
+        @Index(name = "idx_cash_card_owner_amount_id", columnList = "owner, amount, id") /* owner-scoped keyset pagination */
+})
+public class CashCard implements Serializable, Owned {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    /*
+     * Pooled sequence: one sequence call hands out increment_size ids, so inserts
+     * (and JDBC batches of inserts) don't pay a round trip each for their id.
+     * Sharded, the owner's bucket is appended to every value, see CashCardIdGenerator
+     */
+    @GeneratedValue(generator = "cash_card_seq")
+    @GenericGenerator(name = "cash_card_seq", type = CashCardIdGenerator.class, parameters = {
+            @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "cash_card_seq"),
+            @Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM, value = "50"),
+            @Parameter(name = OptimizableGenerator.OPT_PARAM, value = "pooled")
+    })
     private Long id;
 
     @Column(name = "amount", nullable = false)
@@ -47,6 +69,7 @@ public class CashCard implements Serializable {
         this.amount = amount;
     }
 
+    @Override
     public String getOwner() {
         return owner;
     }
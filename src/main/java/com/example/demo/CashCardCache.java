@@ -0,0 +1,199 @@
+package com.example.demo;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Read-through cache of single CashCard lookups, keyed by (owner, id) so a
+ * cached card is only ever served to its owner.
+ *
+ * Size is bounded with LRU eviction and every entry expires after a TTL.
+ * Entries are invalidated by the CashCardEvent of every committed write; a
+ * lookup that raced with a write doesn't store what it loaded (see generation),
+ * so after a write returns no reader can see the previous amount.
+ *
+ * Owners are spread over stripes (up to 32, never more than maxEntries), each an
+ * LRU map behind its own lock, so lookups of different owners rarely wait for each
+ * other. maxEntries bounds all stripes together, whatever their share of it: an
+ * insert past it evicts the least recently used entry of its own stripe, or of
+ * the next stripe that has one when its own holds nothing else.
+ */
+@Component
+class CashCardCache implements MeterBinder {
+
+    private static final int MAX_STRIPES = 32;
+
+    private record Key(String owner, long id) {
+    }
+
+    private record Entry(CashCardView cashCard, long expiresAt) {
+    }
+
+    private final class Stripe {
+        final ReentrantLock lock = new ReentrantLock(); /* not synchronized: doesn't pin virtual threads */
+        final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true); /* access order, i.e. LRU */
+        /* Bumped by every invalidation, lookups only store their result if it didn't move meanwhile */
+        long generation;
+
+        /* Under lock: drops the least recently used entry unless it's keep, false when there's none to drop */
+        boolean evictEldest(Key keep) {
+            Iterator<Key> eldest = entries.keySet().iterator();
+            if (!eldest.hasNext()) {
+                return false;
+            }
+            if (eldest.next().equals(keep)) {
+                return false;
+            }
+            eldest.remove();
+            size.decrementAndGet();
+            evictions.increment();
+            return true;
+        }
+    }
+
+    private final boolean enabled;
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final Stripe[] stripes;
+    /* Entries in all stripes */
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    CashCardCache(@Value("${cashcard.cache.enabled:true}") boolean enabled,
+            @Value("${cashcard.cache.max-entries:10000}") int maxEntries,
+            @Value("${cashcard.cache.ttl:30s}") Duration ttl) {
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        this.stripes = new Stripe[Math.max(1, Math.min(MAX_STRIPES, maxEntries))];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /*
+     * The cached CashCardView of owner with the given id, or whatever loader returns
+     * (remembered unless it's null)
+     */
+    CashCardView get(String owner, Long id, Supplier<CashCardView> loader) {
+        if (!enabled || id == null) {
+            return loader.get();
+        }
+        Key key = new Key(owner, id);
+        Stripe stripe = stripe(owner);
+        long observedGeneration;
+        stripe.lock.lock();
+        try {
+            Entry entry = stripe.entries.get(key);
+            if (entry != null) {
+                if (entry.expiresAt() - System.nanoTime() > 0) {
+                    hits.increment();
+                    return entry.cashCard();
+                }
+                stripe.entries.remove(key);
+                size.decrementAndGet();
+                evictions.increment();
+            }
+            observedGeneration = stripe.generation;
+        } finally {
+            stripe.lock.unlock();
+        }
+        misses.increment();
+
+        CashCardView cashCard = loader.get();
+        if (cashCard != null) {
+            boolean full;
+            stripe.lock.lock();
+            try {
+                if (stripe.generation != observedGeneration
+                        || stripe.entries.put(key, new Entry(cashCard, System.nanoTime() + ttlNanos)) != null
+                        || size.incrementAndGet() <= maxEntries) {
+                    return cashCard;
+                }
+                full = !stripe.evictEldest(key);
+            } finally {
+                stripe.lock.unlock();
+            }
+            if (full) {
+                evictElsewhere(stripe);
+            }
+        }
+        return cashCard;
+    }
+
+    /* One lock at a time, so stripes evicting for each other never wait on each other's locks */
+    private void evictElsewhere(Stripe full) {
+        int from = Arrays.asList(stripes).indexOf(full);
+        for (int i = 1; i <= stripes.length && size.get() > maxEntries; i++) {
+            Stripe stripe = stripes[(from + i) % stripes.length];
+            stripe.lock.lock();
+            try {
+                stripe.evictEldest(null);
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    /* Every committed update or delete drops the cached CashCard */
+    @EventListener
+    void on(CashCardEvent event) {
+        if (event.type() != CashCardEvent.Type.CREATED) {
+            invalidate(event.owner(), event.id());
+        }
+    }
+
+    void invalidate(String owner, Long id) {
+        if (!enabled) {
+            return;
+        }
+        Stripe stripe = stripe(owner);
+        stripe.lock.lock();
+        try {
+            stripe.generation++;
+            if (stripe.entries.remove(new Key(owner, id)) != null) {
+                size.decrementAndGet();
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    CacheStats stats() {
+        return new CacheStats(size.get(), maxEntries, hits.sum(), misses.sum(), evictions.sum());
+    }
+
+    private Stripe stripe(String owner) {
+        return stripes[Math.floorMod(owner.hashCode(), stripes.length)];
+    }
+
+    /* Published as cashcard.cache.* meters, next to the other application metrics */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("cashcard.cache.requests", hits, LongAdder::sum).tag("result", "hit").register(registry);
+        FunctionCounter.builder("cashcard.cache.requests", misses, LongAdder::sum).tag("result", "miss").register(registry);
+        FunctionCounter.builder("cashcard.cache.evictions", evictions, LongAdder::sum).register(registry);
+        Gauge.builder("cashcard.cache.size", this, cache -> cache.stats().size()).register(registry);
+    }
+
+    record CacheStats(int size, int maxEntries, long hits, long misses, long evictions) {
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.demo;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/*
+ * Exposes the hit/miss/eviction counters of the CashCardCache at /actuator/cashcardcache
+ * so the cache can be sized from real traffic
+ */
+@Component
+@Endpoint(id = "cashcardcache")
+class CashCardCacheEndpoint {
+
+    private final CashCardCache cashCardCache;
+
+    CashCardCacheEndpoint(CashCardCache cashCardCache) {
+        this.cashCardCache = cashCardCache;
+    }
+
+    @ReadOperation
+    CashCardCache.CacheStats stats() {
+        return cashCardCache.stats();
+    }
+}
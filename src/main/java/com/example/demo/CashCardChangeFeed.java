@@ -0,0 +1,520 @@
+package com.example.demo;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Per-owner broadcaster of CashCardEvents behind GET /cashcards/stream (Server-Sent Events).
+ *
+ * An event is serialized once, numbered from one sequence (which starts at the
+ * startup time like OwnerVersions, so ids differ across restarts) and put into
+ * the bounded queue of each of the owner's subscribers; the committing thread
+ * never writes to a connection. A few delivery threads drain the queues that
+ * have something in them, so an idle subscriber is an async request plus a few
+ * small objects, no thread. A subscriber whose queue is full is too slow: it is
+ * closed, and reconnects with the Last-Event-ID of what it got.
+ *
+ * The last replaySize events of every owner that subscribed since startup are
+ * kept for those reconnects. A Last-Event-ID followed by nothing that's been
+ * dropped from there resumes with the events after it, any other one (too old,
+ * from before a restart, unreadable) gets a resync event: reload with GET
+ * /cashcards, the stream goes on from there. New subscribers first get a
+ * subscribed event, whose id resumes from the moment they subscribed.
+ *
+ * Heartbeat comments keep idle connections open through proxies and find the
+ * dead ones. Published as cashcard.stream.* meters.
+ *
+ * A write to a client that stopped reading blocks its delivery thread until the
+ * container's write timeout. One taking longer than writeTimeout is given up on:
+ * the subscriber is dropped like a slow one and the delivery pool gets another
+ * thread until that write returns, so stalled clients never hold up the others.
+ * An owner has at most maxSubscribersPerOwner streams, and the recent events of
+ * an owner nobody subscribed to for feedIdleTimeout are forgotten (a reconnect
+ * from before then gets a resync).
+ */
+@Component
+class CashCardChangeFeed implements SmartLifecycle, MeterBinder {
+
+    static final String LAST_EVENT_ID = "Last-Event-ID";
+
+    private static final Set<DataWithMediaType> HEARTBEAT = SseEmitter.event().comment("").build();
+
+    private record Recent(long id, Set<DataWithMediaType> event) {
+    }
+
+    private static final class OwnerFeed {
+        final ReentrantLock lock = new ReentrantLock(); /* not synchronized: doesn't pin virtual threads */
+        final ArrayDeque<Recent> recent = new ArrayDeque<>();
+        final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+        /* Every event of the owner after this id is in recent */
+        long complete;
+        /* When the last subscriber left; an evicted feed is out of feeds and takes nothing anymore */
+        long idleSince = System.nanoTime();
+        boolean evicted;
+
+        OwnerFeed(long complete) {
+            this.complete = complete;
+        }
+    }
+
+    private final class Subscriber {
+        final OwnerFeed feed;
+        final SseEmitter emitter;
+        final ReentrantLock lock = new ReentrantLock();
+        final ArrayDeque<Set<DataWithMediaType>> queue = new ArrayDeque<>(4);
+        /* bufferSize, plus the replayed events that are queued from the start */
+        int limit = bufferSize;
+        boolean draining;
+        boolean closed;
+        /* The write in progress, and whether the watchdog gave up on it */
+        long sendingSince;
+        boolean sending;
+        boolean stalled;
+
+        Subscriber(OwnerFeed feed, SseEmitter emitter) {
+            this.feed = feed;
+            this.emitter = emitter;
+        }
+
+        /* Never blocks: the write happens on a delivery thread */
+        void offer(Set<DataWithMediaType> event, boolean onlyWhenIdle) {
+            lock.lock();
+            try {
+                if (closed || (onlyWhenIdle && (draining || !queue.isEmpty()))) {
+                    return;
+                }
+                if (queue.peekLast() == HEARTBEAT) {
+                    queue.pollLast(); /* the event keeps the connection open just as well */
+                }
+                if (queue.size() >= limit) {
+                    /* Too slow: the delivery thread completes the emitter, the client resumes from what it got */
+                    queue.clear();
+                    closed = true;
+                    dropped.increment();
+                } else {
+                    queue.add(event);
+                }
+                if (draining) {
+                    return;
+                }
+                draining = true;
+            } finally {
+                lock.unlock();
+            }
+            deliver(this::drain);
+        }
+
+        /* Starts sending what subscribe queued */
+        void start() {
+            lock.lock();
+            try {
+                if (draining || closed) {
+                    return;
+                }
+                draining = true;
+            } finally {
+                lock.unlock();
+            }
+            deliver(this::drain);
+        }
+
+        private void drain() {
+            while (true) {
+                boolean complete;
+                Set<DataWithMediaType> event;
+                lock.lock();
+                try {
+                    complete = closed;
+                    event = complete ? null : queue.poll();
+                    if (event == null) {
+                        draining = false;
+                    } else {
+                        sending = true;
+                        sendingSince = System.nanoTime();
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                if (complete) {
+                    emitter.complete();
+                }
+                if (event == null) {
+                    return;
+                }
+                sendingNow.add(this);
+                try {
+                    emitter.send(event);
+                    if (event != HEARTBEAT) {
+                        delivered.increment();
+                    }
+                } catch (IOException | IllegalStateException e) {
+                    /* Gone: the container dispatches the error, onError unsubscribes */
+                    close();
+                } finally {
+                    sendingNow.remove(this);
+                    sent();
+                }
+            }
+        }
+
+        /* The watchdog's part: gives up on a write in progress for longer than writeTimeout */
+        boolean giveUpIfStalled(long now) {
+            lock.lock();
+            try {
+                if (!sending || stalled || now - sendingSince < writeTimeoutNanos) {
+                    return false;
+                }
+                stalled = true;
+                closed = true; /* dropped, completed once the write returns */
+                queue.clear();
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void sent() {
+            boolean gaveUp;
+            lock.lock();
+            try {
+                sending = false;
+                gaveUp = stalled;
+                stalled = false;
+            } finally {
+                lock.unlock();
+            }
+            if (gaveUp) {
+                resizeDelivery(-1);
+            }
+        }
+
+        void close() {
+            lock.lock();
+            try {
+                closed = true;
+                queue.clear();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private final ObjectMapper objectMapper;
+    private final int bufferSize;
+    private final int replaySize;
+    private final int maxSubscribers;
+    private final int maxSubscribersPerOwner;
+    private final long timeoutMillis;
+    private final Duration heartbeat;
+    private final int deliveryThreads;
+    private final long writeTimeoutNanos;
+    private final long feedIdleTimeoutNanos;
+
+    private final AtomicLong sequence = new AtomicLong(System.currentTimeMillis() << 16);
+    private final Map<String, OwnerFeed> feeds = new ConcurrentHashMap<>();
+    private final AtomicInteger subscribers = new AtomicInteger();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder resyncs = new LongAdder();
+    private final LongAdder stalledWrites = new LongAdder();
+    private final Set<Subscriber> sendingNow = ConcurrentHashMap.newKeySet();
+
+    private volatile ThreadPoolExecutor delivery;
+    private volatile ScheduledExecutorService scheduler;
+    /* Writes given up on whose threads the delivery pool is still missing */
+    private int stalledThreads;
+    private final ReentrantLock resize = new ReentrantLock();
+
+    CashCardChangeFeed(ObjectMapper objectMapper,
+            @Value("${cashcard.stream.buffer-size:64}") int bufferSize,
+            @Value("${cashcard.stream.replay-size:128}") int replaySize,
+            @Value("${cashcard.stream.max-subscribers:20000}") int maxSubscribers,
+            @Value("${cashcard.stream.max-subscribers-per-owner:10}") int maxSubscribersPerOwner,
+            @Value("${cashcard.stream.timeout:30m}") Duration timeout,
+            @Value("${cashcard.stream.heartbeat:30s}") Duration heartbeat,
+            @Value("${cashcard.stream.delivery-threads:4}") int deliveryThreads,
+            @Value("${cashcard.stream.write-timeout:10s}") Duration writeTimeout,
+            @Value("${cashcard.stream.feed-idle-timeout:10m}") Duration feedIdleTimeout) {
+        this.objectMapper = objectMapper;
+        this.bufferSize = bufferSize;
+        this.replaySize = replaySize;
+        this.maxSubscribers = maxSubscribers;
+        this.maxSubscribersPerOwner = maxSubscribersPerOwner;
+        this.timeoutMillis = timeout.toMillis();
+        this.heartbeat = heartbeat;
+        this.deliveryThreads = deliveryThreads;
+        this.writeTimeoutNanos = writeTimeout.toNanos();
+        this.feedIdleTimeoutNanos = feedIdleTimeout.toNanos();
+    }
+
+    /*
+     * A stream of owner's events, resuming after lastEventId when that's possible.
+     * Null when there are maxSubscribers already, or maxSubscribersPerOwner of owner.
+     */
+    SseEmitter subscribe(String owner, String lastEventId) {
+        if (subscribers.incrementAndGet() > maxSubscribers) {
+            subscribers.decrementAndGet();
+            return null;
+        }
+        OwnerFeed feed = lockedFeed(owner);
+        Subscriber subscriber;
+        try {
+            if (feed.subscribers.size() >= maxSubscribersPerOwner) {
+                subscribers.decrementAndGet();
+                return null;
+            }
+            subscriber = new Subscriber(feed, new SseEmitter(timeoutMillis));
+            Long after = parse(lastEventId);
+            if (after == null) {
+                subscriber.queue.add(SseEmitter.event().name("subscribed").id(Long.toString(sequence.get())).data("").build());
+            } else if (after >= feed.complete && after <= sequence.get()) {
+                /* The replay may be longer than bufferSize, it doesn't count as falling behind */
+                feed.recent.stream().filter(recent -> recent.id() > after).forEach(recent -> subscriber.queue.add(recent.event()));
+                subscriber.limit += subscriber.queue.size();
+            } else {
+                resyncs.increment();
+                subscriber.queue.add(SseEmitter.event().name("resync").id(Long.toString(sequence.get())).data("").build());
+            }
+            feed.subscribers.add(subscriber);
+        } finally {
+            feed.lock.unlock();
+        }
+        SseEmitter emitter = subscriber.emitter;
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onError(error -> unsubscribe(subscriber));
+        emitter.onTimeout(emitter::complete); /* the client reconnects with its Last-Event-ID */
+        subscriber.start(); /* the first event sends the headers along */
+        return emitter;
+    }
+
+    /* The owner's feed, locked, created if there is none (or only one being evicted) */
+    private OwnerFeed lockedFeed(String owner) {
+        while (true) {
+            OwnerFeed feed = feeds.computeIfAbsent(owner, name -> new OwnerFeed(sequence.get()));
+            feed.lock.lock();
+            if (!feed.evicted) {
+                return feed;
+            }
+            feed.lock.unlock();
+        }
+    }
+
+    @EventListener
+    void on(CashCardEvent event) {
+        if (!feeds.containsKey(event.owner())) {
+            /* Nobody of this owner subscribed lately, still numbered: who resumes from before this gets a resync */
+            sequence.incrementAndGet();
+            return;
+        }
+        String data;
+        try {
+            data = objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+        while (true) {
+            OwnerFeed feed = feeds.get(event.owner());
+            if (feed == null) {
+                sequence.incrementAndGet();
+                return;
+            }
+            feed.lock.lock();
+            try {
+                if (feed.evicted) {
+                    continue; /* a subscriber may have created its successor already */
+                }
+                long id = sequence.incrementAndGet();
+                Set<DataWithMediaType> sse = SseEmitter.event()
+                        .name(event.type().name().toLowerCase())
+                        .id(Long.toString(id))
+                        .data(data, MediaType.APPLICATION_JSON)
+                        .build();
+                feed.recent.add(new Recent(id, sse));
+                if (feed.recent.size() > replaySize) {
+                    feed.complete = feed.recent.poll().id();
+                }
+                /* Under the lock, so every subscriber gets the owner's events in id order */
+                for (Subscriber subscriber : feed.subscribers) {
+                    subscriber.offer(sse, false);
+                }
+                return;
+            } finally {
+                feed.lock.unlock();
+            }
+        }
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        subscriber.close();
+        OwnerFeed feed = subscriber.feed;
+        feed.lock.lock();
+        try {
+            if (feed.subscribers.remove(subscriber)) {
+                subscribers.decrementAndGet();
+                if (feed.subscribers.isEmpty()) {
+                    feed.idleSince = System.nanoTime();
+                }
+            }
+        } finally {
+            feed.lock.unlock();
+        }
+    }
+
+    private void deliver(Runnable drain) {
+        ThreadPoolExecutor executor = delivery;
+        try {
+            if (executor != null) {
+                executor.execute(drain);
+            }
+        } catch (RejectedExecutionException e) {
+            /* stopping, stop() completes every emitter */
+        }
+    }
+
+    private void sendHeartbeats() {
+        for (OwnerFeed feed : feeds.values()) {
+            for (Subscriber subscriber : feed.subscribers) {
+                subscriber.offer(HEARTBEAT, true);
+            }
+        }
+        evictIdleFeeds(System.nanoTime());
+    }
+
+    /* Forgets the feeds nobody subscribed to for feedIdleTimeout as of now (a System.nanoTime()), returns how many */
+    int evictIdleFeeds(long now) {
+        int evicted = 0;
+        for (Map.Entry<String, OwnerFeed> entry : feeds.entrySet()) {
+            OwnerFeed feed = entry.getValue();
+            feed.lock.lock();
+            try {
+                if (feed.subscribers.isEmpty() && now - feed.idleSince > feedIdleTimeoutNanos) {
+                    feed.evicted = true;
+                    feeds.remove(entry.getKey(), feed);
+                    evicted++;
+                }
+            } finally {
+                feed.lock.unlock();
+            }
+        }
+        return evicted;
+    }
+
+    /* Drops the subscribers of writes that take too long, and replaces the threads those writes hold */
+    private void watchStalledWrites() {
+        long now = System.nanoTime();
+        for (Subscriber subscriber : sendingNow) {
+            if (subscriber.giveUpIfStalled(now)) {
+                dropped.increment();
+                stalledWrites.increment();
+                resizeDelivery(1);
+                unsubscribe(subscriber);
+            }
+        }
+    }
+
+    private void resizeDelivery(int stalled) {
+        resize.lock();
+        try {
+            stalledThreads += stalled;
+            ThreadPoolExecutor executor = delivery;
+            if (executor != null) {
+                executor.setCorePoolSize(deliveryThreads + stalledThreads);
+            }
+        } finally {
+            resize.unlock();
+        }
+    }
+
+    private static Long parse(String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(lastEventId.trim());
+        } catch (NumberFormatException e) {
+            return Long.MIN_VALUE; /* resynced */
+        }
+    }
+
+    @Override
+    public void start() {
+        AtomicInteger threads = new AtomicInteger();
+        ThreadFactory factory = task -> {
+            Thread thread = new Thread(task, "cashcard-stream-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        /* Grown by resizeDelivery past deliveryThreads, for as long as stalled writes hold threads */
+        delivery = new ThreadPoolExecutor(deliveryThreads, Integer.MAX_VALUE, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), factory);
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(factory);
+        executor.scheduleWithFixedDelay(this::sendHeartbeats, heartbeat.toMillis(), heartbeat.toMillis(), TimeUnit.MILLISECONDS);
+        long watch = Math.max(TimeUnit.NANOSECONDS.toMillis(writeTimeoutNanos) / 4, 10);
+        executor.scheduleWithFixedDelay(this::watchStalledWrites, watch, watch, TimeUnit.MILLISECONDS);
+        scheduler = executor;
+    }
+
+    /* Ends every stream, so shutdown doesn't wait for their timeouts */
+    @Override
+    public void stop() {
+        ThreadPoolExecutor executor = delivery;
+        if (executor == null) {
+            return;
+        }
+        delivery = null;
+        scheduler.shutdownNow();
+        executor.shutdownNow();
+        for (OwnerFeed feed : feeds.values()) {
+            for (Subscriber subscriber : feed.subscribers) {
+                subscriber.close();
+                if (!sendingNow.contains(subscriber)) { /* the emitter is locked while it sends, that drain completes it */
+                    subscriber.emitter.complete();
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return delivery != null;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("cashcard.stream.subscribers", subscribers, AtomicInteger::get).register(registry);
+        Gauge.builder("cashcard.stream.feeds", feeds, Map::size).register(registry);
+        FunctionCounter.builder("cashcard.stream.events", delivered, LongAdder::sum).register(registry);
+        FunctionCounter.builder("cashcard.stream.dropped", dropped, LongAdder::sum).register(registry);
+        FunctionCounter.builder("cashcard.stream.resyncs", resyncs, LongAdder::sum).register(registry);
+        FunctionCounter.builder("cashcard.stream.stalled", stalledWrites, LongAdder::sum).register(registry);
+    }
+}
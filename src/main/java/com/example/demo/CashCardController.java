@@ -2,22 +2,45 @@ package com.example.demo;
 
 import java.net.URI;
 import java.security.Principal;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.ResponseEntity;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
-import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.util.UriComponents;
 import org.springframework.web.util.UriComponentsBuilder;
 import org.springframework.web.bind.annotation.PutMapping;
 
@@ -26,95 +49,462 @@ import org.springframework.web.bind.annotation.PutMapping;
 @RequestMapping("/cashcards") /* Indicates which address requests must have to access this Controller */
 public class CashCardController {
 
+    private static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+    /* Clients may keep responses but have to revalidate them (If-None-Match) before every use */
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
     private final CashCardRepository cashCardRepository;
+    private final CashCardLedger cashCardLedger;
+    private final CashCardLedgerRepository ledgerRepository;
+    private final CashCardCache cashCardCache;
+    private final CashCardExporter cashCardExporter;
+    private final OwnerBalanceSummaries ownerBalanceSummaries;
+    private final OwnerVersions ownerVersions;
+    private final CashCardGroupCommitter groupCommitter;
+    private final CashCardChangeFeed changeFeed;
+    private final RecentWriters recentWriters;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int maxBatchSize;
+    private final int maxMultiGetIds;
 
-    private CashCardController(CashCardRepository cashCardRepository) {
+    private CashCardController(CashCardRepository cashCardRepository, CashCardLedger cashCardLedger,
+            CashCardLedgerRepository ledgerRepository, CashCardCache cashCardCache, CashCardExporter cashCardExporter,
+            OwnerBalanceSummaries ownerBalanceSummaries, OwnerVersions ownerVersions, CashCardGroupCommitter groupCommitter,
+            CashCardChangeFeed changeFeed, ObjectProvider<RecentWriters> recentWriters, ApplicationEventPublisher eventPublisher,
+            @Value("${cashcard.batch.max-size:1000}") int maxBatchSize,
+            @Value("${cashcard.multi-get.max-ids:1000}") int maxMultiGetIds) {
         this.cashCardRepository = cashCardRepository;
+        this.cashCardLedger = cashCardLedger;
+        this.ledgerRepository = ledgerRepository;
+        this.cashCardCache = cashCardCache;
+        this.cashCardExporter = cashCardExporter;
+        this.ownerBalanceSummaries = ownerBalanceSummaries;
+        this.ownerVersions = ownerVersions;
+        this.groupCommitter = groupCommitter;
+        this.changeFeed = changeFeed;
+        this.recentWriters = recentWriters.getIfAvailable(); /* only there with read replicas */
+        this.eventPublisher = eventPublisher;
+        this.maxBatchSize = maxBatchSize;
+        this.maxMultiGetIds = maxMultiGetIds;
     }
 
     @GetMapping("/{requestedId}") /*
                                    * marks a method as a handler method. GET requests that match
                                    * cashcards/{requestedID} will be handled by this method
                                    */
-    private ResponseEntity<CashCard> findById(@PathVariable Long requestedId, Principal principal) { /*
+    private ResponseEntity<CashCardView> findById(@PathVariable Long requestedId, Principal principal, WebRequest request) { /*
                                                                                  * makes Spring Web aware of the
                                                                                  * requestedId supplied in the HTTP
                                                                                  * request and the principal (the current user authenticated
                                                                                  * and authorized information) 
                                                                                  */
-        CashCard cashCard = findCashCard(requestedId, principal);//Added principal to get access to current username provided from BasicAuth
+        /* 304 straight from the owner's version: no lookup, no JSON. Otherwise the ETag header is set for the 200 */
+        if (checkNotModified(request, principal.getName())) {
+            return null;
+        }
+        /* With read replicas the cache may hold what a replica loaded: a 200 with an ETag reads the primary itself */
+        CashCardView cashCard = recentWriters != null && request.getAttribute(ReplicaRoutingDataSource.READ_FROM_PRIMARY, RequestAttributes.SCOPE_REQUEST) != null
+                ? cashCardRepository.findViewByIdAndOwner(requestedId, principal.getName())
+                : findCashCard(requestedId, principal);//Added principal to get access to current username provided from BasicAuth
         if (cashCard !=null) {
-            return ResponseEntity.ok(cashCard);
+            return ResponseEntity.ok().cacheControl(REVALIDATE).body(cashCard);
         } else
             return ResponseEntity.notFound().build();
     }
 
     /*
     * Saving the new CashCard and return its location. 
+    * With group commit enabled the CashCard is committed together with other creates (see CashCardGroupCommitter),
+    * the response still waits for that commit. 503 when too many creates are already waiting for theirs, or when
+    * the commit doesn't start within cashcard.group-commit.timeout: the CashCard is not created then.
     */
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     private ResponseEntity<Void> createCashCard(@RequestBody CashCard cashCard, UriComponentsBuilder ucb, Principal principal) {
 
+        if (!hasRecordableAmount(cashCard)) {
+            return ResponseEntity.badRequest().build();
+        }
         CashCard cashCardWithOwner =  new CashCard(null, cashCard.getAmount(), principal.getName());
         
-        CashCard savedCashCard = cashCardRepository.save(cashCardWithOwner);
+        CashCard savedCashCard;
+        if (groupCommitter.isEnabled()) {
+            CashCardGroupCommitter.Pending pending = groupCommitter.submit(cashCardWithOwner);
+            if (pending == null) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+            }
+            try {
+                /* the committer published the CashCardEvent */
+                savedCashCard = groupCommitter.await(pending);
+            } catch (CompletionException e) {
+                /* No longer going to be committed: try again later. Anything else failed the insert itself */
+                if (e.getCause() instanceof RejectedExecutionException) {
+                    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+                }
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+            if (savedCashCard == null) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+            }
+        } else {
+            savedCashCard = cashCardLedger.create(cashCardWithOwner);
+            eventPublisher.publishEvent(CashCardEvent.created(savedCashCard));
+        }
         /* Constructing a URI to the newly created CashCard */
         URI cashCardLocation = ucb.path("/cashcards/{id}").buildAndExpand(savedCashCard.getId()).toUri();
 
         return ResponseEntity.created(cashCardLocation).build();
     }
+
+    /*
+    * Saving many new CashCards in a single transaction (inserted in JDBC batches) and returning their locations,
+    * in the same order as the submitted CashCards. Like a single create, the Principal owns every CashCard.
+    */
+    @PostMapping("/batch")
+    private ResponseEntity<List<URI>> createCashCards(@RequestBody List<CashCard> cashCards, UriComponentsBuilder ucb, Principal principal) {
+
+        if (cashCards.isEmpty() || cashCards.size() > maxBatchSize || !cashCards.stream().allMatch(CashCardController::hasRecordableAmount)) {
+            return ResponseEntity.badRequest().build();
+        }
+        List<CashCard> cashCardsWithOwner = cashCards.stream()
+                .map(cashCard -> new CashCard(null, cashCard.getAmount(), principal.getName()))
+                .toList();
+
+        UriComponents cashCardLocation = ucb.path("/cashcards/{id}").build();
+        List<URI> locations = new ArrayList<>(cashCardsWithOwner.size());
+        for (CashCard savedCashCard : cashCardLedger.createAll(cashCardsWithOwner)) {
+            eventPublisher.publishEvent(CashCardEvent.created(savedCashCard));
+            locations.add(cashCardLocation.expand(savedCashCard.getId()).toUri());
+        }
+        return ResponseEntity.status(HttpStatus.CREATED).body(locations);
+    }
     /**
      * 
      * @return a list of CashCards objects sorted ascending by amount
      * 
      */
     @GetMapping()
-    private ResponseEntity<List<CashCard>> getAllCashCards(Pageable pageable, Principal principal) {
+    private ResponseEntity<List<CashCardView>> getAllCashCards(Pageable pageable, Principal principal, WebRequest request) {
+
+        if (checkNotModified(request, principal.getName())) {
+            return null;
+        }
 
         /*
          * getSortOr() method provides default values for the page, size, and sort parameters
          * Spring provides the default page and size values (they are 0 and 20, respectively)
          */
-        Page<CashCard> page = cashCardRepository.findByOwner(principal.getName(),PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), pageable.getSortOr(Sort.by(Sort.Direction.ASC, "amount"))));
-        return ResponseEntity.ok(page.getContent());
+        Slice<CashCardView> page = cashCardRepository.findViewsByOwner(principal.getName(),PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), pageable.getSortOr(Sort.by(Sort.Direction.ASC, "amount"))));
+        return ResponseEntity.ok().cacheControl(REVALIDATE).body(page.getContent());
+    }
+
+    /**
+     * Multi-get mode of the list endpoint, selected by the presence of the "ids" parameter (ids=1,2,3):
+     * the Principal's CashCards among those ids in one query, instead of a request per CashCard.
+     * Ids that don't exist or belong to someone else are left out.
+     *
+     * @return the CashCards found, in the order of ids, 400 for no ids or more than cashcard.multi-get.max-ids
+     */
+    @GetMapping(params = { "ids", "!after" })
+    private ResponseEntity<List<CashCardView>> getCashCardsByIds(@RequestParam List<Long> ids, Principal principal, WebRequest request) {
+
+        if (ids.isEmpty() || ids.size() > maxMultiGetIds) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (checkNotModified(request, principal.getName())) {
+            return null;
+        }
+        return ResponseEntity.ok().cacheControl(REVALIDATE).body(findCashCards(ids, principal));
+    }
+
+    /* Multi-get and cursor mode don't combine: one or the other, not a 500 for two matching handlers */
+    @GetMapping(params = { "ids", "after" })
+    private ResponseEntity<Void> getCashCardsByIdsAfter() {
+        return ResponseEntity.badRequest().build();
+    }
+
+    /**
+     * The multi-get for id lists too long for a URL, taking them as a JSON array. Only reads:
+     * counted against the read budget of the rate limits, like a GET.
+     *
+     * @return the CashCards found, in the order of ids, 400 for no ids or more than cashcard.multi-get.max-ids
+     */
+    @PostMapping("/lookup")
+    private ResponseEntity<List<CashCardView>> lookupCashCards(@RequestBody List<Long> ids, Principal principal) {
+
+        if (ids.isEmpty() || ids.size() > maxMultiGetIds) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok().cacheControl(REVALIDATE).body(findCashCards(ids, principal));
+    }
+
+    /**
+     * Cursor (keyset) mode of the list endpoint, selected by the presence of the "after" parameter.
+     * An empty "after" starts from the beginning; every slice links to the next one through an opaque
+     * cursor, so deep slices cost the same as the first one and no COUNT query is run.
+     *
+     * @return a slice of CashCards sorted ascending by amount (then id), plus the next-slice link
+     */
+    @GetMapping(params = { "after", "!ids" })
+    private ResponseEntity<CashCardSlice> getCashCardsAfter(@RequestParam String after, Pageable pageable, Principal principal,
+            WebRequest request) {
+
+        CashCardCursor cursor = null;
+        if (!after.isEmpty()) {
+            try {
+                cursor = CashCardCursor.decode(after);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        }
+        if (checkNotModified(request, principal.getName())) {
+            return null;
+        }
+
+        Pageable limit = PageRequest.ofSize(pageable.getPageSize());
+        Slice<CashCardView> slice = cursor == null
+                ? cashCardRepository.findFirstSliceByOwner(principal.getName(), limit)
+                : cashCardRepository.findSliceByOwnerAfter(principal.getName(), cursor.amount(), cursor.id(), limit);
+
+        if (!slice.hasNext()) {
+            return ResponseEntity.ok().cacheControl(REVALIDATE).body(new CashCardSlice(slice.getContent(), null));
+        }
+        /* The next slice starts right after the last CashCard of this one */
+        String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("after", CashCardCursor.of(slice.getContent().get(slice.getNumberOfElements() - 1)).encode())
+                .replaceQueryParam("size", pageable.getPageSize())
+                .replaceQueryParam("page")
+                .toUriString();
+        return ResponseEntity.ok()
+                .cacheControl(REVALIDATE)
+                .header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"")
+                .body(new CashCardSlice(slice.getContent(), next));
     }
+    /**
+     * Amount-range search over the Principal's CashCards: minAmount and maxAmount (both inclusive, both optional),
+     * sorted by amount ascending or, with sort=amount,desc, descending (ties by id), and cursor paged like the
+     * cursor mode of the list endpoint ("after" taking the cursor of the last CashCard seen).
+     *
+     * @return a slice of the CashCards in the range plus the next-slice link, 400 for an empty range, another sort or a bad cursor
+     */
+    @GetMapping("/search")
+    private ResponseEntity<CashCardSlice> searchCashCards(@RequestParam(required = false) Double minAmount,
+            @RequestParam(required = false) Double maxAmount, @RequestParam(required = false) String after, Pageable pageable,
+            Principal principal, WebRequest request) {
+
+        double min = minAmount != null ? minAmount : -Double.MAX_VALUE;
+        double max = maxAmount != null ? maxAmount : Double.MAX_VALUE;
+        Sort.Order byAmount = pageable.getSort().getOrderFor("amount");
+        if (min > max || pageable.getSort().stream().anyMatch(order -> !order.getProperty().equals("amount"))) {
+            return ResponseEntity.badRequest().build();
+        }
+        CashCardCursor cursor = null;
+        if (after != null && !after.isEmpty()) {
+            try {
+                cursor = CashCardCursor.decode(after);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        }
+        if (checkNotModified(request, principal.getName())) {
+            return null;
+        }
+
+        /* The slice starts at the range's bound or right after the cursor, whichever comes later */
+        Pageable limit = PageRequest.ofSize(pageable.getPageSize());
+        Slice<CashCardView> slice;
+        if (byAmount != null && byAmount.isDescending()) {
+            boolean resume = cursor != null && cursor.amount() <= max;
+            slice = cashCardRepository.findDescendingByOwnerAndAmountBetween(principal.getName(), resume ? cursor.amount() : max, min,
+                    resume ? cursor.id() : Long.MAX_VALUE, limit);
+        } else {
+            boolean resume = cursor != null && cursor.amount() >= min;
+            slice = cashCardRepository.findAscendingByOwnerAndAmountBetween(principal.getName(), resume ? cursor.amount() : min, max,
+                    resume ? cursor.id() : Long.MIN_VALUE, limit);
+        }
+
+        if (!slice.hasNext()) {
+            return ResponseEntity.ok().cacheControl(REVALIDATE).body(new CashCardSlice(slice.getContent(), null));
+        }
+        String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("after", CashCardCursor.of(slice.getContent().get(slice.getNumberOfElements() - 1)).encode())
+                .replaceQueryParam("size", pageable.getPageSize())
+                .replaceQueryParam("page")
+                .toUriString();
+        return ResponseEntity.ok()
+                .cacheControl(REVALIDATE)
+                .header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"")
+                .body(new CashCardSlice(slice.getContent(), next));
+    }
+
+    /**
+     * The ledger of one of the Principal's CashCards: every change of its amount in order, numbered from 1 for
+     * the create, starting after the sequence given by "from" (all of them without it). Slices link to the next one like the cursor mode above.
+     *
+     * @return a slice of the CashCard's ledger entries, 404 when the Principal has no CashCard with that id
+     */
+    @GetMapping("/{requestedId}/history")
+    private ResponseEntity<List<LedgerEntryView>> getHistory(@PathVariable Long requestedId, @RequestParam(defaultValue = "0") long from,
+            Pageable pageable, Principal principal, WebRequest request) {
+
+        if (checkNotModified(request, principal.getName())) {
+            return null;
+        }
+        Slice<LedgerEntryView> slice = ledgerRepository.findHistory(principal.getName(), requestedId, from,
+                PageRequest.ofSize(pageable.getPageSize()));
+        if (slice.isEmpty() && !ledgerRepository.existsByOwnerAndCardId(principal.getName(), requestedId)) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!slice.hasNext()) {
+            return ResponseEntity.ok().cacheControl(REVALIDATE).body(slice.getContent());
+        }
+        String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("from", slice.getContent().get(slice.getNumberOfElements() - 1).sequence())
+                .replaceQueryParam("size", pageable.getPageSize())
+                .replaceQueryParam("page")
+                .toUriString();
+        return ResponseEntity.ok()
+                .cacheControl(REVALIDATE)
+                .header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"")
+                .body(slice.getContent());
+    }
+
+    /**
+     * 
+     * @return count, total, min and max amount of the Principal's CashCards, served from memory
+     */
+    @GetMapping("/summary")
+    private ResponseEntity<CashCardSummary> getSummary(Principal principal) {
+        return ResponseEntity.ok(ownerBalanceSummaries.summary(principal.getName()));
+    }
+
+    /**
+     * Streams every CashCard owned by the Principal, as newline delimited JSON or as CSV (format=csv).
+     * CashCards are written while they are read from the database, so heap use doesn't depend on how many there are.
+     */
+    @GetMapping("/export")
+    private ResponseEntity<StreamingResponseBody> exportCashCards(@RequestParam(defaultValue = "ndjson") String format, Principal principal) {
+
+        String owner = principal.getName();
+        if ("csv".equals(format)) {
+            return ResponseEntity.ok()
+                    .contentType(TEXT_CSV)
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"cashcards.csv\"")
+                    .body(out -> cashCardExporter.writeCsv(owner, out));
+        }
+        if (!"ndjson".equals(format)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(out -> cashCardExporter.writeNdjson(owner, out));
+    }
+
+    /**
+     * Server-Sent Events of the Principal's CashCards: created, updated and deleted as they're committed, so
+     * clients don't have to poll GET /cashcards. Reconnects send the Last-Event-ID they got to resume, or get
+     * a resync event when they've missed too much (see CashCardChangeFeed). 503 when there are too many streams,
+     * of everyone or of the Principal.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    private ResponseEntity<SseEmitter> streamChanges(@RequestHeader(name = CashCardChangeFeed.LAST_EVENT_ID, required = false) String lastEventId,
+            Principal principal) {
+        SseEmitter emitter = changeFeed.subscribe(principal.getName(), lastEventId);
+        if (emitter == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+        }
+        return ResponseEntity.ok().cacheControl(CacheControl.noStore()).body(emitter);
+    }
+
     /**
      * 
      * @param requestedId
      * @param cashCardUpdate
      * @param principal
-     * @return  udpdate a CashCard with the specified amount
+     * @param request carries the optional If-Match, an ETag from one of the GET endpoints
+     * @return  udpdate a CashCard with the specified amount, 412 when If-Match isn't the owner's current version
      */
     @PutMapping("/{requestedId}")
-    private ResponseEntity<Void> updateCashCard(@PathVariable Long requestedId, @RequestBody CashCard cashCardUpdate, Principal principal) {
-        
-        /*
-        *Retrieving the CashCard to the submitted requestedId and Principal (provided by Spring Security) to ensure only the authenticated, 
-        *authorized owner may update his CashCard
-        */
-        CashCard cashCard = findCashCard(requestedId, principal);
+    private ResponseEntity<Void> updateCashCard(@PathVariable Long requestedId, @RequestBody CashCard cashCardUpdate, Principal principal,
+            WebRequest request) {
 
-        if(cashCard != null && principal.getName().equals(cashCard.getOwner())){  
-            CashCard updatedCashCard = new CashCard(cashCard.getId(), cashCardUpdate.getAmount(), principal.getName());
-            cashCardRepository.save(updatedCashCard);
-            // just return 204 NO CONTENT for now.
-            return ResponseEntity.noContent().build();
+        if (!hasRecordableAmount(cashCardUpdate)) {
+            return ResponseEntity.badRequest().build();
         }
-            return ResponseEntity.notFound().build();
+        String owner = principal.getName();
+        /* Updates of one owner take turns, so a matching If-Match can't be overtaken before our update commits */
+        return ownerVersions.locked(owner, () -> {
+            /* If-Match naming another version of the owner's CashCards: 412 PRECONDITION FAILED, nothing updated */
+            if (request.checkNotModified(ownerVersions.eTag(owner))) {
+                return null;
+            }
+            /*
+            *Updating the CashCard only if it has the submitted requestedId AND belongs to the Principal (provided by Spring Security),
+            *to ensure only the authenticated, authorized owner may update his CashCard. One statement, no prior SELECT,
+            *plus the change appended to the ledger.
+            */
+            Double previousAmount = cashCardLedger.update(requestedId, owner, cashCardUpdate.getAmount());
+            if (previousAmount == null) {
+                return ResponseEntity.notFound().build();
+            }
+            /* the update above is committed: drop the cached CashCard, adjust the owner's summary, bump the owner's version */
+            eventPublisher.publishEvent(CashCardEvent.updated(owner, requestedId, previousAmount, cashCardUpdate.getAmount()));
+            // just return 204 NO CONTENT for now, with the ETag to send along with the next update.
+            return ResponseEntity.noContent().eTag(ownerVersions.eTag(owner)).build();
+        });
     }
 
-    private CashCard findCashCard(Long requestedId, Principal principal){
-        return cashCardRepository.findByIdAndOwner(requestedId, principal.getName());
+    /*
+     * request.checkNotModified with the owner's version, for the reads that can vouch for it. The version is
+     * only current on the primary: with read replicas, a read that would go to a replica gets no ETag (it may
+     * lag behind the version, and the ETag would answer 304 to that stale body from then on), the others are
+     * pinned to the primary. Revalidations (If-None-Match) always read from the primary, so a client keeps
+     * its ETag once it got one.
+     */
+    private boolean checkNotModified(WebRequest request, String owner) {
+        if (recentWriters != null && request.getHeader(HttpHeaders.IF_NONE_MATCH) == null && !recentWriters.mustReadFromPrimary(owner)) {
+            return false;
+        }
+        request.setAttribute(ReplicaRoutingDataSource.READ_FROM_PRIMARY, Boolean.TRUE, RequestAttributes.SCOPE_REQUEST);
+        return request.checkNotModified(ownerVersions.eTag(owner));
+    }
+
+    /*
+     * JSON numbers like 1e400 are read as Infinity, which has no place in a balance; nor has an
+     * amount whose changes the ledger couldn't record exactly (see CashCardLedger.records)
+     */
+    private static boolean hasRecordableAmount(CashCard cashCard) {
+        return CashCardLedger.records(cashCard.getAmount());
+    }
+
+    /*
+     * Single CashCard lookups are served from the owner-scoped CashCardCache when possible
+     */
+    private CashCardView findCashCard(Long requestedId, Principal principal){
+        return cashCardCache.get(principal.getName(), requestedId,
+                () -> cashCardRepository.findViewByIdAndOwner(requestedId, principal.getName()));
+    }
+
+    /*
+     * One owner-scoped IN query for all of ids (each one once), the result put back in the order of ids
+     */
+    private List<CashCardView> findCashCards(List<Long> ids, Principal principal) {
+        Set<Long> distinctIds = new LinkedHashSet<>(ids);
+        distinctIds.remove(null);
+        Map<Long, CashCardView> found = cashCardRepository.findViewsByOwnerAndIdIn(principal.getName(), distinctIds).stream()
+                .collect(Collectors.toMap(CashCardView::id, Function.identity()));
+        return distinctIds.stream().map(found::get).filter(Objects::nonNull).toList();
     }
 
     @DeleteMapping("/{requestedId}")
     private ResponseEntity<Void> deleteCashCard(@PathVariable Long requestedId, Principal principal){
         
-        if(!cashCardRepository.existsByIdAndOwner(requestedId, principal.getName())){
+        /* One owner-checked DELETE (and its ledger entry), nothing deleted means the CashCard doesn't exist or isn't the Principal's */
+        Double previousAmount = cashCardLedger.delete(requestedId, principal.getName());
+        if(previousAmount == null){
             return ResponseEntity.notFound().build();
         }
-        cashCardRepository.deleteById(requestedId); 
+        eventPublisher.publishEvent(CashCardEvent.deleted(principal.getName(), requestedId, previousAmount));
         return ResponseEntity.noContent().build(); 
     }
 }
@@ -0,0 +1,36 @@
+package com.example.demo;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position of a CashCard in the (amount, id) ordering used by keyset pagination.
+ *
+ * Clients only ever see the opaque token produced by encode() and hand it back
+ * in the "after" request parameter to get the next slice.
+ */
+record CashCardCursor(double amount, long id) {
+
+    static CashCardCursor of(CashCardView cashCard) {
+        return new CashCardCursor(cashCard.amount(), cashCard.id());
+    }
+
+    String encode() {
+        String position = Double.toString(amount) + ':' + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /*
+     * Throws IllegalArgumentException when the token wasn't produced by encode()
+     */
+    static CashCardCursor decode(String token) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = position.lastIndexOf(':');
+            return new CashCardCursor(Double.parseDouble(position.substring(0, separator)),
+                    Long.parseLong(position.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Malformed cursor: " + token, e);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.demo;
+
+/**
+ * Published by CashCardController once a write to a CashCard is committed, so
+ * caches and derived views can follow along.
+ *
+ * previousAmount is null for CREATED, amount is null for DELETED.
+ */
+record CashCardEvent(Type type, String owner, long id, Double previousAmount, Double amount) {
+
+    enum Type {
+        CREATED, UPDATED, DELETED
+    }
+
+    static CashCardEvent created(CashCard cashCard) {
+        return new CashCardEvent(Type.CREATED, cashCard.getOwner(), cashCard.getId(), null, cashCard.getAmount());
+    }
+
+    static CashCardEvent updated(String owner, long id, Double previousAmount, Double amount) {
+        return new CashCardEvent(Type.UPDATED, owner, id, previousAmount, amount);
+    }
+
+    static CashCardEvent deleted(String owner, long id, Double previousAmount) {
+        return new CashCardEvent(Type.DELETED, owner, id, previousAmount, null);
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.demo;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Writes every CashCard of an owner to an OutputStream, one card at a time.
+ *
+ * Cards are read through CashCardRepository.streamByOwner as CashCardViews,
+ * which never enter the persistence context, and written as they arrive, so
+ * memory use doesn't grow with the number of cards an owner has.
+ */
+@Component
+class CashCardExporter {
+
+    private static final byte[] NEW_LINE = { '\n' };
+
+    private final CashCardRepository cashCardRepository;
+    private final CashCardShards cashCardShards;
+    private final TransactionOperations readOnlyTransaction;
+    private final ObjectWriter jsonWriter;
+
+    CashCardExporter(CashCardRepository cashCardRepository, CashCardShards cashCardShards,
+            ObjectProvider<PlatformTransactionManager> transactionManager, ObjectMapper objectMapper) {
+        this.cashCardRepository = cashCardRepository;
+        this.cashCardShards = cashCardShards;
+        this.readOnlyTransaction = readOnly(transactionManager.getIfAvailable());
+        this.jsonWriter = objectMapper.writer();
+    }
+
+    /* Newline delimited JSON (application/x-ndjson), one CashCard object per line */
+    void writeNdjson(String owner, OutputStream out) {
+        export(owner, cashCard -> {
+            out.write(jsonWriter.writeValueAsBytes(cashCard));
+            out.write(NEW_LINE);
+        });
+    }
+
+    /* CSV with an id,amount,owner header */
+    void writeCsv(String owner, OutputStream out) {
+        write(out, "id,amount,owner\n");
+        export(owner, cashCard -> write(out, cashCard.id() + "," + cashCard.amount() + "," + csv(cashCard.owner()) + "\n"));
+    }
+
+    private interface CashCardWriter {
+        void write(CashCardView cashCard) throws IOException;
+    }
+
+    /* Runs on the thread of the streaming response, so the owner's shard is named explicitly */
+    private void export(String owner, CashCardWriter writer) {
+        cashCardShards.forOwner(owner, () -> readOnlyTransaction.execute(status -> {
+            try (Stream<CashCardView> cashCards = cashCardRepository.streamByOwner(owner)) {
+                cashCards.forEach(cashCard -> {
+                    try {
+                        writer.write(cashCard);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+            return null;
+        }));
+    }
+
+    /* The in-memory profile has no transactions, its streamByOwner reads a snapshot instead */
+    private static TransactionOperations readOnly(PlatformTransactionManager transactionManager) {
+        if (transactionManager == null) {
+            return TransactionOperations.withoutTransaction();
+        }
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        return transaction;
+    }
+
+    private static void write(OutputStream out, String text) {
+        try {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String csv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,257 @@
+package com.example.demo;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+/**
+ * Write-behind group commit of CashCard creation, off unless enabled.
+ *
+ * Creates wait in a bounded queue; a single writer takes up to batchSize of them,
+ * waiting at most maxDelay after the first one for more, and saves them, with
+ * their ledger entries, in one transaction (inserted in JDBC batches). A caller's future completes once its
+ * batch committed, so the id it gets is durable, and the writer publishes the
+ * CashCardEvent of every CashCard it committed. When a batch fails, its
+ * CashCards are retried one by one (as new copies: the rolled back batch may
+ * have left ids on them) so only the offending ones fail. With several shards,
+ * a batch is committed in one transaction per shard.
+ *
+ * A caller waits at most timeout for its commit (see await). A create the writer
+ * hasn't taken by then is taken back and never committed, one the writer is
+ * already committing is waited for. The writer is stopped only after the web
+ * server, creates submitted after that are rejected and whatever is still queued
+ * when the writer is gone fails.
+ *
+ * Published as cashcard.group-commit.* meters: batch size, commit latency, queue
+ * length, rejected and timed out creates.
+ */
+@Component
+class CashCardGroupCommitter implements SmartLifecycle, MeterBinder {
+
+    /* A submitted create; whoever claims it first, the writer or a caller giving up, decides its fate */
+    record Pending(CashCard cashCard, CompletableFuture<CashCard> saved, AtomicBoolean claimed) {
+
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+    }
+
+    private final CashCardLedger cashCardLedger;
+    private final CashCardShards cashCardShards;
+    private final ApplicationEventPublisher eventPublisher;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final long timeoutNanos;
+    private final BlockingQueue<Pending> queue;
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+
+    private volatile DistributionSummary batchSizes;
+    private volatile Timer commits;
+    private volatile Thread writer;
+
+    CashCardGroupCommitter(CashCardLedger cashCardLedger, CashCardShards cashCardShards, ApplicationEventPublisher eventPublisher,
+            @Value("${cashcard.group-commit.enabled:false}") boolean enabled,
+            @Value("${cashcard.group-commit.queue-capacity:10000}") int queueCapacity,
+            @Value("${cashcard.group-commit.batch-size:100}") int batchSize,
+            @Value("${cashcard.group-commit.max-delay:5ms}") Duration maxDelay,
+            @Value("${cashcard.group-commit.timeout:10s}") Duration timeout) {
+        this.cashCardLedger = cashCardLedger;
+        this.cashCardShards = cashCardShards;
+        this.eventPublisher = eventPublisher;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.timeoutNanos = timeout.toNanos();
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /*
+     * Queues cashCard for the next group commit, see await. Null when the queue is
+     * full (back-pressure) or the writer is stopped: nothing queued.
+     */
+    Pending submit(CashCard cashCard) {
+        Pending pending = new Pending(cashCard, new CompletableFuture<>(), new AtomicBoolean());
+        if (writer == null || !queue.offer(pending)) {
+            rejected.increment();
+            return null;
+        }
+        /* Stopped meanwhile: unless the writer or stop() took it already, it's ours to take back */
+        if (writer == null && queue.remove(pending)) {
+            rejected.increment();
+            return null;
+        }
+        return pending;
+    }
+
+    /*
+     * The CashCard pending was committed as. Null when it wasn't taken for a commit within
+     * timeout: then it's taken back and never will be, the create can safely be repeated.
+     * Throws a CompletionException when the commit failed, or the writer stopped before it.
+     */
+    CashCard await(Pending pending) {
+        try {
+            return pending.saved().get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException | InterruptedException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            if (pending.claim()) {
+                queue.remove(pending);
+                timedOut.increment();
+                return null;
+            }
+            /* The writer has it: being committed right now */
+            return pending.saved().join();
+        } catch (ExecutionException e) {
+            throw new CompletionException(e.getCause());
+        }
+    }
+
+    private void drain() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (writer != null || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null || !first.claim()) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < batchSize) {
+                    Pending next = queue.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    if (next.claim()) { /* otherwise its caller gave up on it */
+                        batch.add(next);
+                    }
+                }
+            } catch (InterruptedException e) {
+                /* stop() interrupts a writer that's waiting, whatever is queued still gets committed */
+            }
+            if (!batch.isEmpty()) {
+                /* The writer has no principal: every shard's share of the batch is committed on that shard */
+                Map<Integer, List<Pending>> byShard = batch.stream()
+                        .collect(Collectors.groupingBy(pending -> cashCardShards.shardOf(pending.cashCard().getOwner())));
+                byShard.forEach((shard, pendings) -> cashCardShards.onShard(shard, () -> commit(pendings)));
+                batch.clear();
+            }
+        }
+    }
+
+    private Void commit(List<Pending> batch) {
+        long start = System.nanoTime();
+        List<CashCard> saved;
+        try {
+            saved = cashCardLedger.createAll(batch.stream().map(Pending::cashCard).toList());
+        } catch (RuntimeException batchFailure) {
+            for (Pending pending : batch) {
+                CashCard cashCard = pending.cashCard();
+                try {
+                    committed(pending, cashCardLedger.create(new CashCard(null, cashCard.getAmount(), cashCard.getOwner())));
+                } catch (RuntimeException e) {
+                    pending.saved().completeExceptionally(e);
+                }
+            }
+            return null;
+        }
+        record(batch.size(), start);
+        for (int i = 0; i < batch.size(); i++) {
+            committed(batch.get(i), saved.get(i));
+        }
+        return null;
+    }
+
+    /* Published here, not by the caller: it may have stopped waiting */
+    private void committed(Pending pending, CashCard saved) {
+        eventPublisher.publishEvent(CashCardEvent.created(saved));
+        pending.saved().complete(saved);
+    }
+
+    private void record(int size, long start) {
+        if (batchSizes != null) {
+            batchSizes.record(size);
+            commits.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void start() {
+        if (enabled) {
+            Thread thread = new Thread(this::drain, "cashcard-group-commit");
+            thread.setDaemon(true);
+            writer = thread;
+            thread.start();
+        }
+    }
+
+    @Override
+    public void stop() {
+        Thread thread = writer;
+        if (thread != null) {
+            writer = null;
+            thread.interrupt();
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            /* Nobody commits these any more */
+            for (Pending pending = queue.poll(); pending != null; pending = queue.poll()) {
+                if (pending.claim()) {
+                    pending.saved().completeExceptionally(new RejectedExecutionException("Group commit stopped"));
+                }
+            }
+        }
+    }
+
+    /* Stops after the web server (and starts before it), so no request is left waiting for a commit */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return writer != null;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        batchSizes = DistributionSummary.builder("cashcard.group-commit.batch.size").register(registry);
+        commits = Timer.builder("cashcard.group-commit.commit").publishPercentiles(0.5, 0.95, 0.99).register(registry);
+        Gauge.builder("cashcard.group-commit.queue", queue, BlockingQueue::size).register(registry);
+        FunctionCounter.builder("cashcard.group-commit.rejected", rejected, LongAdder::sum).register(registry);
+        FunctionCounter.builder("cashcard.group-commit.timed-out", timedOut, LongAdder::sum).register(registry);
+    }
+}
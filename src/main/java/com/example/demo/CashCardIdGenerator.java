@@ -0,0 +1,74 @@
+package com.example.demo;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.enhanced.Optimizer;
+import org.hibernate.id.enhanced.OptimizerDescriptor;
+import org.hibernate.id.enhanced.OptimizerFactory;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+/**
+ * Ids of CashCards and their ledger entries from a sequence, sharded: from the
+ * sequence of the shard the row is inserted into, with the bucket of its owner in
+ * the low bits (see CashCardShards.id). ShardingConfig turns that on through the
+ * BUCKETED_IDS Hibernate property; otherwise ids are the plain sequence values.
+ *
+ * Sequence values are only unique within a shard; appending the bucket makes the
+ * ids unique across shards, as long as a bucket's sequence never goes back. That's
+ * why CashCardShardRebalancer moves a shard's sequence past the one a bucket came from.
+ *
+ * Sharded, every shard also has its own optimizer: a block of values fetched from
+ * one shard's sequence is only handed out to inserts into that shard, the shard
+ * whose connection the session uses (CashCardShards.current, like ShardRoutingDataSource).
+ */
+public class CashCardIdGenerator extends SequenceStyleGenerator {
+
+    static final String BUCKETED_IDS = "cashcard.bucketed-ids";
+    /* The CashCardShards bean, set along with BUCKETED_IDS */
+    static final String SHARDS = "cashcard.shards";
+
+    private CashCardShards shards;
+    private OptimizerDescriptor optimizerDescriptor;
+    private int initialValue;
+    private final Map<Integer, Optimizer> optimizers = new ConcurrentHashMap<>();
+
+    @Override
+    public void configure(Type type, Properties parameters, ServiceRegistry serviceRegistry) {
+        super.configure(type, parameters, serviceRegistry);
+        Map<String, Object> settings = serviceRegistry.requireService(ConfigurationService.class).getSettings();
+        if (ConfigurationHelper.getBoolean(BUCKETED_IDS, settings)) {
+            shards = (CashCardShards) settings.get(SHARDS);
+        }
+    }
+
+    @Override
+    protected OptimizerDescriptor determineOptimizationStrategy(Properties parameters, int incrementSize) {
+        optimizerDescriptor = super.determineOptimizationStrategy(parameters, incrementSize);
+        return optimizerDescriptor;
+    }
+
+    @Override
+    protected int determineInitialValue(Properties parameters) {
+        initialValue = super.determineInitialValue(parameters);
+        return initialValue;
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) {
+        if (shards == null) {
+            return super.generate(session, object);
+        }
+        Integer shard = shards.current();
+        Optimizer optimizer = optimizers.computeIfAbsent(shard != null ? shard : 0, key -> OptimizerFactory.buildOptimizer(
+                optimizerDescriptor, getIdentifierType().getReturnedClass(), getOptimizer().getIncrementSize(), initialValue));
+        Object sequenceValue = optimizer.generate(getDatabaseStructure().buildCallback(session));
+        return CashCardShards.id(((Number) sequenceValue).longValue(), CashCardShards.bucketOf(((Owned) object).getOwner()));
+    }
+}
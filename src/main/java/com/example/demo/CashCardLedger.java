@@ -0,0 +1,110 @@
+package com.example.demo;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * The writes of CashCards, each one appending its change to the ledger
+ * (cash_card_ledger) in the same transaction.
+ *
+ * The amount column stays the current balance, so balance reads remain a single
+ * row lookup; the ledger is the history behind it. PUT sets an absolute amount,
+ * so an update still needs the previous one, read with the row locked for the
+ * write (see CashCardRepository.updateAmountByIdAndOwner).
+ * Ledger entries are only ever inserted, batched along with the CashCards of a
+ * batch create. The in-memory profile has neither JPA nor transactions: there
+ * the repositories apply each write on its own.
+ *
+ * Every CashCard's ledger is numbered on its own, from 1 for the create. An
+ * update or delete numbers its entry after the last one while it holds the
+ * CashCard's row lock, so the next write of the CashCard waits for this
+ * one to commit and the numbers follow the commit order, on any instance.
+ */
+@Component
+class CashCardLedger {
+
+    private final CashCardRepository cashCardRepository;
+    private final CashCardLedgerRepository ledgerRepository;
+    private final TransactionOperations transaction;
+    private final Clock clock = Clock.systemUTC();
+
+    CashCardLedger(CashCardRepository cashCardRepository, CashCardLedgerRepository ledgerRepository,
+            ObjectProvider<PlatformTransactionManager> transactionManager) {
+        this.cashCardRepository = cashCardRepository;
+        this.ledgerRepository = ledgerRepository;
+        PlatformTransactionManager manager = transactionManager.getIfAvailable();
+        this.transaction = manager != null ? new TransactionTemplate(manager) : TransactionOperations.withoutTransaction();
+    }
+
+    CashCard create(CashCard cashCard) {
+        return createAll(List.of(cashCard)).get(0);
+    }
+
+    /* The saved CashCards in the order of cashCards */
+    List<CashCard> createAll(List<CashCard> cashCards) {
+        return transaction.execute(status -> {
+            Instant now = clock.instant();
+            List<CashCard> saved = new ArrayList<>(cashCards.size());
+            List<CashCardLedgerEntry> entries = new ArrayList<>(cashCards.size());
+            for (CashCard cashCard : cashCardRepository.saveAll(cashCards)) {
+                saved.add(cashCard);
+                entries.add(new CashCardLedgerEntry(cashCard.getId(), 1L, cashCard.getOwner(), BigDecimal.valueOf(cashCard.getAmount()), now));
+            }
+            ledgerRepository.saveAll(entries);
+            return saved;
+        });
+    }
+
+    /* The amount before the update, null when owner has no such CashCard. Setting the same amount again records nothing */
+    Double update(Long id, String owner, Double amount) {
+        return transaction.execute(status -> {
+            Double previousAmount = cashCardRepository.updateAmountByIdAndOwner(id, owner, amount);
+            if (previousAmount != null && !previousAmount.equals(amount)) {
+                append(id, owner, BigDecimal.valueOf(amount).subtract(BigDecimal.valueOf(previousAmount)));
+            }
+            return previousAmount;
+        });
+    }
+
+    /* The amount before the delete, null when owner has no such CashCard */
+    Double delete(Long id, String owner) {
+        return transaction.execute(status -> {
+            Double previousAmount = cashCardRepository.deleteByIdAndOwner(id, owner);
+            if (previousAmount != null) {
+                append(id, owner, BigDecimal.valueOf(previousAmount).negate());
+            }
+            return previousAmount;
+        });
+    }
+
+    /* Under the row lock of the update/delete just run */
+    private void append(Long id, String owner, BigDecimal delta) {
+        long sequence = ledgerRepository.findLastSequence(owner, id) + 1;
+        ledgerRepository.save(new CashCardLedgerEntry(id, sequence, owner, delta, clock.instant()));
+    }
+
+    /*
+     * Whether the ledger can record amount exactly: at most CashCardLedgerEntry.SCALE decimals, and small enough
+     * for the difference to any other such amount to fit the delta column. Null is left to the amount column.
+     */
+    static boolean records(Double amount) {
+        if (amount == null) {
+            return true;
+        }
+        if (!Double.isFinite(amount)) {
+            return false;
+        }
+        BigDecimal decimal = BigDecimal.valueOf(amount).stripTrailingZeros();
+        return decimal.scale() <= CashCardLedgerEntry.SCALE
+                && decimal.precision() - decimal.scale() < CashCardLedgerEntry.PRECISION - CashCardLedgerEntry.SCALE;
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.demo;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.OptimizableGenerator;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+/**
+ * One change of a CashCard's amount, appended to the ledger by CashCardLedger
+ * and never updated: created (delta = the initial amount), updated (delta = the
+ * difference) or deleted (delta = minus the last amount).
+ *
+ * Deltas are decimals, exactly the difference of the decimal amounts, so an
+ * entry's amount is the sum of the deltas up to it. The column keeps up to SCALE
+ * decimals and values below 10^(PRECISION - SCALE).
+ */
+@Entity
+@Table(name = "cash_card_ledger", indexes = {
+        /* history range scans, and no sequence twice in one CashCard's ledger */
+        @Index(name = "idx_cash_card_ledger_owner_card_sequence", columnList = "owner, card_id, sequence_number", unique = true)
+})
+public class CashCardLedgerEntry implements Owned {
+
+    static final int PRECISION = 38;
+    static final int SCALE = 10;
+
+    /* Key of the row and nothing more, pooled and bucketed like CashCard ids */
+    @Id
+    @GeneratedValue(generator = "cash_card_ledger_seq")
+    @GenericGenerator(name = "cash_card_ledger_seq", type = CashCardIdGenerator.class, parameters = {
+            @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "cash_card_ledger_seq"),
+            @Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM, value = "50"),
+            @Parameter(name = OptimizableGenerator.OPT_PARAM, value = "pooled")
+    })
+    @Column(name = "id")
+    private Long id;
+
+    /*
+     * The entry's place in the ledger of its CashCard: 1 for the create, one more for
+     * every change after it, in commit order (see CashCardLedger)
+     */
+    @Column(name = "sequence_number", nullable = false)
+    private Long sequence;
+
+    @Column(name = "card_id", nullable = false)
+    private Long cardId;
+
+    @Column(name = "owner", nullable = false)
+    private String owner;
+
+    @Column(name = "delta", nullable = false, precision = PRECISION, scale = SCALE)
+    private BigDecimal delta;
+
+    @Column(name = "recorded_at", nullable = false)
+    private Instant recordedAt;
+
+    protected CashCardLedgerEntry() {
+    }
+
+    CashCardLedgerEntry(Long cardId, Long sequence, String owner, BigDecimal delta, Instant recordedAt) {
+        this.cardId = cardId;
+        this.sequence = sequence;
+        this.owner = owner;
+        this.delta = delta;
+        this.recordedAt = recordedAt;
+    }
+
+    /* An entry that already has its key, see InMemoryCashCardLedgerRepository */
+    CashCardLedgerEntry(Long id, Long cardId, Long sequence, String owner, BigDecimal delta, Instant recordedAt) {
+        this(cardId, sequence, owner, delta, recordedAt);
+        this.id = id;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getSequence() {
+        return sequence;
+    }
+
+    public Long getCardId() {
+        return cardId;
+    }
+
+    @Override
+    public String getOwner() {
+        return owner;
+    }
+
+    public BigDecimal getDelta() {
+        return delta;
+    }
+
+    public Instant getRecordedAt() {
+        return recordedAt;
+    }
+}
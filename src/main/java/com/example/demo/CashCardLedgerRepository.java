@@ -0,0 +1,33 @@
+package com.example.demo;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+interface CashCardLedgerRepository extends CrudRepository<CashCardLedgerEntry, Long> {
+
+    /*
+     * The entries of a CashCard after a given sequence, in order: a range scan of the
+     * (owner, card_id, sequence_number) index, as cheap deep in the history as at its start
+     */
+    @Transactional(readOnly = true)
+    @Query("""
+            select new com.example.demo.LedgerEntryView(e.sequence, e.cardId, e.delta, e.recordedAt) from CashCardLedgerEntry e
+            where e.owner = :owner and e.cardId = :cardId and e.sequence > :after
+            order by e.sequence asc""")
+    Slice<LedgerEntryView> findHistory(@Param("owner") String owner, @Param("cardId") long cardId, @Param("after") long after,
+            Pageable pageable);
+
+    /*
+     * The sequence of the last entry of a CashCard, 0 for none: one seek of the same index.
+     * Only stays the last one while the CashCard's row is locked, see CashCardLedger
+     */
+    @Query("select coalesce(max(e.sequence), 0) from CashCardLedgerEntry e where e.owner = :owner and e.cardId = :cardId")
+    long findLastSequence(@Param("owner") String owner, @Param("cardId") long cardId);
+
+    @Transactional(readOnly = true)
+    boolean existsByOwnerAndCardId(String owner, Long cardId);
+}
@@ -1,20 +1,154 @@
 package com.example.demo;
 
-import org.springframework.data.domain.Page;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
 
 
 interface CashCardRepository extends CrudRepository<CashCard, Long>, PagingAndSortingRepository<CashCard, Long>{
 
+    /*
+     * The owner-scoped finders are cacheable: with the query cache on (see SecondLevelCacheConfig) their
+     * results are kept until a write to Cash_card commits, otherwise the hint does nothing
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     CashCard findByIdAndOwner(Long id, String owner); //Filtering data access by CashCard owner
 
-    Page<CashCard> findByOwner(String owner, Pageable pageable); //Filtering data access by CashCard owner
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    Slice<CashCard> findByOwner(String owner, Pageable pageable); //Filtering data access by CashCard owner. A Slice (not a Page) so no COUNT query is issued
 
     boolean existsByIdAndOwner(Long id, String owner); //Checking the existence of a CasChard. Obtaining just the necessary information about the CashCard's existential status
+
+    /*
+     * Read-only projections used by the GET endpoints: CashCardViews are built straight from the
+     * result set, and the read-only transaction turns flushing off.
+     */
+    @Transactional(readOnly = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    CashCardView findViewByIdAndOwner(Long id, String owner);
+
+    @Transactional(readOnly = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    Slice<CashCardView> findViewsByOwner(String owner, Pageable pageable);
+
+    /*
+     * Multi-get: those of the given ids that are the owner's CashCards, in no particular order.
+     * One statement whatever the number of ids, an IN list on the primary key checked against the owner.
+     */
+    @Transactional(readOnly = true)
+    @Query("select new com.example.demo.CashCardView(c.id, c.amount, c.owner) from CashCard c where c.owner = :owner and c.id in :ids")
+    List<CashCardView> findViewsByOwnerAndIdIn(@Param("owner") String owner, @Param("ids") Collection<Long> ids);
+
+    /*
+     * All of an owner's CashCards as a lazily consumed Stream, fetched from the database
+     * in chunks. Must be consumed (and closed) inside a transaction.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select new com.example.demo.CashCardView(c.id, c.amount, c.owner) from CashCard c where c.owner = :owner order by c.id")
+    Stream<CashCardView> streamByOwner(@Param("owner") String owner);
+
+    /*
+     * Owner-checked writes, returning the amount the CashCard had before the write, null meaning
+     * no such CashCard for that owner. The previous amount is read with the row locked for the
+     * write that follows in the same transaction, which the JPQL UPDATE/DELETE then changes
+     * (Hibernate evicts what it cached of Cash_card for bulk statements like these).
+     */
+    @Transactional
+    default Double updateAmountByIdAndOwner(Long id, String owner, Double amount) {
+        Double previousAmount = lockAmountByIdAndOwner(id, owner);
+        if (previousAmount != null) {
+            setAmountByIdAndOwner(id, owner, amount);
+        }
+        return previousAmount;
+    }
+
+    @Transactional
+    default Double deleteByIdAndOwner(Long id, String owner) {
+        Double previousAmount = lockAmountByIdAndOwner(id, owner);
+        if (previousAmount != null) {
+            removeByIdAndOwner(id, owner);
+        }
+        return previousAmount;
+    }
+
+    /* SELECT ... FOR UPDATE: must run inside the transaction of the write */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c.amount from CashCard c where c.id = :id and c.owner = :owner")
+    Double lockAmountByIdAndOwner(@Param("id") Long id, @Param("owner") String owner);
+
+    /* The number of affected rows, 0 meaning no such CashCard for that owner */
+    @Modifying
+    @Transactional
+    @Query("update CashCard c set c.amount = :amount where c.id = :id and c.owner = :owner")
+    int setAmountByIdAndOwner(@Param("id") Long id, @Param("owner") String owner, @Param("amount") Double amount);
+
+    @Modifying
+    @Transactional
+    @Query("delete from CashCard c where c.id = :id and c.owner = :owner")
+    int removeByIdAndOwner(@Param("id") Long id, @Param("owner") String owner);
+
+    /*
+     * Keyset (seek) pagination: the first slice of an owner's CashCards ordered by (amount, id),
+     * and the slice that follows a given (amount, id) position. Both are served by the
+     * (owner, amount, id) index, so deep slices cost the same as the first one: the redundant
+     * amount >= :amount is the bound the index seeks to, the OR alone would scan from the owner's first card.
+     */
+    @Transactional(readOnly = true)
+    @Query("select new com.example.demo.CashCardView(c.id, c.amount, c.owner) from CashCard c where c.owner = :owner order by c.amount asc, c.id asc")
+    Slice<CashCardView> findFirstSliceByOwner(@Param("owner") String owner, Pageable pageable);
+
+    @Transactional(readOnly = true)
+    @Query("""
+            select new com.example.demo.CashCardView(c.id, c.amount, c.owner) from CashCard c
+            where c.owner = :owner and c.amount >= :amount and (c.amount > :amount or c.id > :id)
+            order by c.amount asc, c.id asc""")
+    Slice<CashCardView> findSliceByOwnerAfter(@Param("owner") String owner, @Param("amount") double amount,
+            @Param("id") long id, Pageable pageable);
+
+    /*
+     * Amount-range search, keyset paginated in either direction: the owner's CashCards with amounts
+     * in [from, to] (ascending) or [to, from] (descending), excluding the ones at amount from that
+     * don't come after id. A range scan of the (owner, amount, id) index that stops after the slice,
+     * so it costs the number of CashCards returned, whatever the number the owner has.
+     */
+    @Transactional(readOnly = true)
+    @Query("""
+            select new com.example.demo.CashCardView(c.id, c.amount, c.owner) from CashCard c
+            where c.owner = :owner and c.amount >= :from and c.amount <= :to and (c.amount > :from or c.id > :id)
+            order by c.amount asc, c.id asc""")
+    Slice<CashCardView> findAscendingByOwnerAndAmountBetween(@Param("owner") String owner, @Param("from") double from,
+            @Param("to") double to, @Param("id") long id, Pageable pageable);
+
+    @Transactional(readOnly = true)
+    @Query("""
+            select new com.example.demo.CashCardView(c.id, c.amount, c.owner) from CashCard c
+            where c.owner = :owner and c.amount <= :from and c.amount >= :to and (c.amount < :from or c.id < :id)
+            order by c.amount desc, c.id desc""")
+    Slice<CashCardView> findDescendingByOwnerAndAmountBetween(@Param("owner") String owner, @Param("from") double from,
+            @Param("to") double to, @Param("id") long id, Pageable pageable);
+
+    /*
+     * How many CashCards each owner has of each amount, to rebuild the in-memory balance summaries
+     */
+    @Query("select new com.example.demo.OwnerAmountCount(c.owner, c.amount, count(c)) from CashCard c group by c.owner, c.amount")
+    List<OwnerAmountCount> countByOwnerAndAmount();
 }
 
 /*
 *NOTE: Spring Data will take care of the actual implementations (writing the SQL queries)
- */
\ No newline at end of file
+ */
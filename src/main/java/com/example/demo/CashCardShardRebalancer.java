@@ -0,0 +1,203 @@
+package com.example.demo;
+
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Offline rebalancing of the CashCard shards, run while the application is stopped:
+ * moves every owner whose bucket a ShardMap puts on another shard than the one
+ * holding its CashCards there, with plain JDBC.
+ *
+ * An owner (its CashCards and their ledger) is copied to its new shard and
+ * committed before it's deleted from the old one. An interrupted run leaves at
+ * worst an owner on both shards, and running it again with the same map finishes
+ * the job. Afterwards every shard that took CashCards has its id sequences moved
+ * past the ones they came from, so ids of the moved buckets are never handed out
+ * twice (see CashCardIdGenerator).
+ * New shards need the schema before.
+ *
+ * Writes the properties to configure (shard urls and bucket ranges) to the PrintStream it's
+ * given, standard output when run from the command line, nothing else: they can be redirected
+ * straight into a properties file. Then start the application on the new shards.
+ * Run with:
+ * java -cp target/cashcard-0.0.1-SNAPSHOT.jar -Dloader.main=com.example.demo.CashCardShardRebalancer
+ *      -Dshards=jdbc:h2:tcp://db0/cards,jdbc:h2:tcp://db1/cards,jdbc:h2:tcp://db2/cards -Dto=3
+ *      org.springframework.boot.loader.launch.PropertiesLauncher
+ * System properties: shards (JDBC urls of every shard, old and new, in shard order), to (number of
+ * shards to spread the buckets evenly over, or the bucket ranges of each shard separated by ';',
+ * default: all shards), user (default sa), password (default empty).
+ */
+public final class CashCardShardRebalancer {
+
+    /* Every owner-scoped table, and the sequences of their ids */
+    private static final List<String> TABLES = List.of("cash_card", "cash_card_ledger");
+    private static final List<String> SEQUENCES = List.of("cash_card_seq", "cash_card_ledger_seq");
+    /* The increment of those sequences: Hibernate hands out that many ids per sequence value (see CashCard) */
+    private static final int ID_ALLOCATION = 50;
+
+    private CashCardShardRebalancer() {
+    }
+
+    public static void main(String[] args) throws SQLException {
+        List<String> urls = List.of(System.getProperty("shards", "").split(","));
+        String to = System.getProperty("to", Integer.toString(urls.size()));
+        ShardMap shardMap = to.matches("\\d+") ? ShardMap.evenly(Integer.parseInt(to)) : ShardMap.of(List.of(to.split(";")));
+        rebalance(urls, System.getProperty("user", "sa"), System.getProperty("password", ""), shardMap, System.out);
+    }
+
+    /* Rebalances the shards at urls, then writes their configuration to out */
+    static void rebalance(List<String> urls, String user, String password, ShardMap shardMap, PrintStream out) throws SQLException {
+        List<Connection> shards = new ArrayList<>();
+        try {
+            for (String url : urls) {
+                shards.add(DriverManager.getConnection(url.trim(), user, password));
+            }
+            long moved = rebalance(shards, shardMap);
+            out.println("# Moved " + moved + " CashCards");
+            for (int shard = 0; shard < shardMap.shards(); shard++) {
+                out.println("cashcard.datasource.shards[" + shard + "].url=" + urls.get(shard).trim());
+                out.println("cashcard.datasource.shards[" + shard + "].buckets=" + shardMap.bucketRanges(shard));
+            }
+        } finally {
+            for (Connection shard : shards) {
+                shard.close();
+            }
+        }
+    }
+
+    /*
+     * Moves the CashCards of shards (connections to every shard, in shard order) to where
+     * shardMap puts them, returns the number of CashCards moved. Shards past the ones of
+     * shardMap end up empty
+     */
+    static long rebalance(List<Connection> shards, ShardMap shardMap) throws SQLException {
+        if (shardMap.shards() > shards.size()) {
+            throw new IllegalArgumentException("The map has " + shardMap.shards() + " shards, only " + shards.size() + " given");
+        }
+        for (Connection shard : shards) {
+            shard.setAutoCommit(false);
+        }
+        long moved = 0;
+        boolean[][] movedFromTo = new boolean[shards.size()][shards.size()];
+        for (int source = 0; source < shards.size(); source++) {
+            for (String owner : owners(shards.get(source))) {
+                int target = shardMap.shardOf(CashCardShards.bucketOf(owner));
+                if (target != source) {
+                    moved += move(owner, shards.get(source), shards.get(target));
+                    movedFromTo[source][target] = true;
+                }
+            }
+        }
+        for (int source = 0; source < shards.size(); source++) {
+            for (int target = 0; target < shards.size(); target++) {
+                if (movedFromTo[source][target]) {
+                    for (String sequence : SEQUENCES) {
+                        advanceSequence(shards.get(target), sequence, nextSequenceValue(shards.get(source), sequence));
+                    }
+                }
+            }
+        }
+        return moved;
+    }
+
+    private static List<String> owners(Connection shard) throws SQLException {
+        List<String> owners = new ArrayList<>();
+        try (Statement statement = shard.createStatement();
+                ResultSet rows = statement.executeQuery("select distinct owner from cash_card")) {
+            while (rows.next()) {
+                owners.add(rows.getString(1));
+            }
+        }
+        shard.commit();
+        return owners;
+    }
+
+    /* Moves owner's rows of every table, returns the number of CashCards moved */
+    private static int move(String owner, Connection source, Connection target) throws SQLException {
+        int moved = 0;
+        try {
+            for (String table : TABLES) {
+                int rows = copy(table, owner, source, target);
+                moved += table.equals("cash_card") ? rows : 0;
+            }
+        } catch (SQLException e) {
+            target.rollback();
+            throw e;
+        }
+        target.commit();
+
+        for (String table : TABLES) {
+            try (PreparedStatement delete = source.prepareStatement("delete from " + table + " where owner = ?")) {
+                delete.setString(1, owner);
+                delete.executeUpdate();
+            }
+        }
+        source.commit();
+        return moved;
+    }
+
+    private static int copy(String table, String owner, Connection source, Connection target) throws SQLException {
+        /* Rows of an earlier, interrupted run */
+        try (PreparedStatement leftovers = target.prepareStatement("delete from " + table + " where owner = ?")) {
+            leftovers.setString(1, owner);
+            leftovers.executeUpdate();
+        }
+        int copied = 0;
+        try (PreparedStatement select = source.prepareStatement("select * from " + table + " where owner = ?")) {
+            select.setString(1, owner);
+            select.setFetchSize(500);
+            try (ResultSet rows = select.executeQuery()) {
+                ResultSetMetaData columns = rows.getMetaData();
+                List<String> names = new ArrayList<>();
+                for (int column = 1; column <= columns.getColumnCount(); column++) {
+                    names.add(columns.getColumnName(column));
+                }
+                String sql = "insert into " + table + " (" + String.join(", ", names) + ") values ("
+                        + String.join(", ", Collections.nCopies(names.size(), "?")) + ")";
+                try (PreparedStatement insert = target.prepareStatement(sql)) {
+                    while (rows.next()) {
+                        for (int column = 1; column <= names.size(); column++) {
+                            insert.setObject(column, rows.getObject(column));
+                        }
+                        insert.addBatch();
+                        if (++copied % 500 == 0) {
+                            insert.executeBatch();
+                        }
+                    }
+                    insert.executeBatch();
+                }
+            }
+        }
+        return copied;
+    }
+
+    private static long nextSequenceValue(Connection shard, String sequence) throws SQLException {
+        try (Statement statement = shard.createStatement();
+                ResultSet next = statement.executeQuery("select next value for " + sequence)) {
+            next.next();
+            return next.getLong(1);
+        } finally {
+            shard.commit();
+        }
+    }
+
+    private static void advanceSequence(Connection shard, String sequence, long past) throws SQLException {
+        /* A value is a whole allocation of ids: restart a full allocation after the one past belongs to */
+        long restart = past + ID_ALLOCATION;
+        if (nextSequenceValue(shard, sequence) < restart) {
+            try (Statement statement = shard.createStatement()) {
+                statement.execute("alter sequence " + sequence + " restart with " + restart);
+            }
+            shard.commit();
+        }
+    }
+}
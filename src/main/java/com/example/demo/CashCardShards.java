@@ -0,0 +1,106 @@
+package com.example.demo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Owner-based sharding of the Cash_card table, a single shard unless
+ * cashcard.datasource.shards[*] are configured (see ShardingConfig).
+ *
+ * An owner hashes to one of BUCKETS buckets and the ShardMap tells which shard
+ * holds a bucket; moving buckets between shards is CashCardShardRebalancer's job.
+ * Sharded, CashCard ids carry the bucket of their owner in their low bits (see
+ * CashCardIdGenerator), so an id alone tells where its CashCard lives.
+ *
+ * Every query is owner-scoped, so the shard of a unit of work is the one of the
+ * authenticated principal. Work running without one (startup, background threads)
+ * names its owner or shard through forOwner() / onShard().
+ */
+@Component
+class CashCardShards {
+
+    static final int BUCKET_BITS = 10;
+    static final int BUCKETS = 1 << BUCKET_BITS;
+
+    private final ShardMap shardMap;
+    private final ThreadLocal<Integer> scopedShard = new ThreadLocal<>();
+
+    CashCardShards(Environment environment) {
+        Binder binder = Binder.get(environment);
+        List<String> bucketRanges = new ArrayList<>();
+        boolean rangesGiven = false;
+        for (int i = 0; binder.bind("cashcard.datasource.shards[" + i + "].url", String.class).isBound(); i++) {
+            String ranges = environment.getProperty("cashcard.datasource.shards[" + i + "].buckets");
+            rangesGiven |= ranges != null;
+            bucketRanges.add(ranges);
+        }
+        if (bucketRanges.isEmpty()) {
+            this.shardMap = ShardMap.evenly(1);
+        } else {
+            this.shardMap = rangesGiven ? ShardMap.of(bucketRanges) : ShardMap.evenly(bucketRanges.size());
+        }
+    }
+
+    static int bucketOf(String owner) {
+        /* String.hashCode() is specified, so buckets stay put across JVMs; the murmur3 finalizer spreads it */
+        int hash = owner.hashCode();
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash & (BUCKETS - 1);
+    }
+
+    static int bucketOf(long id) {
+        return (int) (id & (BUCKETS - 1));
+    }
+
+    /* The id of a CashCard in bucket, given a value of the (per shard) id sequence */
+    static long id(long sequenceValue, int bucket) {
+        return sequenceValue << BUCKET_BITS | bucket;
+    }
+
+    int count() {
+        return shardMap.shards();
+    }
+
+    int shardOf(String owner) {
+        return shardMap.shardOf(bucketOf(owner));
+    }
+
+    /* The shard the current unit of work runs on: the scoped one, else the principal's, null without either */
+    Integer current() {
+        Integer shard = scopedShard.get();
+        if (shard != null) {
+            return shard;
+        }
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null ? shardOf(authentication.getName()) : null;
+    }
+
+    <T> T forOwner(String owner, Supplier<T> work) {
+        return onShard(shardOf(owner), work);
+    }
+
+    <T> T onShard(int shard, Supplier<T> work) {
+        Integer outer = scopedShard.get();
+        scopedShard.set(shard);
+        try {
+            return work.get();
+        } finally {
+            if (outer == null) {
+                scopedShard.remove();
+            } else {
+                scopedShard.set(outer);
+            }
+        }
+    }
+}
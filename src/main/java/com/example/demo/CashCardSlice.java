@@ -0,0 +1,10 @@
+package com.example.demo;
+
+import java.util.List;
+
+/**
+ * Response body of the cursor (keyset) mode of GET /cashcards: one slice of
+ * CashCards plus the link to the next slice, null when this is the last one.
+ */
+record CashCardSlice(List<CashCardView> content, String next) {
+}
@@ -0,0 +1,7 @@
+package com.example.demo;
+
+/*
+ * Response body of GET /cashcards/summary. min and max are null when the owner has no CashCards.
+ */
+record CashCardSummary(String owner, long count, double total, Double min, Double max) {
+}
@@ -0,0 +1,11 @@
+package com.example.demo;
+
+/**
+ * Read-only projection of a CashCard, with the same JSON shape as the entity.
+ *
+ * Queries selecting it build the record straight from the result set: nothing
+ * enters the persistence context, so there is no dirty-checking snapshot and no
+ * flush to pay for on the read endpoints.
+ */
+record CashCardView(Long id, Double amount, String owner) {
+}
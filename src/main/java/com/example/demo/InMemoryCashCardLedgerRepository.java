@@ -0,0 +1,227 @@
+package com.example.demo;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.stereotype.Repository;
+
+/**
+ * CashCardLedgerRepository of the in-memory profile, next to InMemoryCashCardRepository:
+ * the entries of every CashCard in one list per (owner, card), in sequence order, so
+ * GET /cashcards/{id}/history reads a range of one list.
+ *
+ * Entries are appended; CashCardLedger never changes one, saving an entry that
+ * has an id replaces the stored one like a JPA merge would (see save). Without transactions an entry shows up
+ * right after the write of the CashCard it records, not together with it, and
+ * without row locks its sequence is its place in the CashCard's list, given
+ * while that's locked (whatever sequence CashCardLedger saw).
+ */
+@Repository
+@Profile("in-memory")
+class InMemoryCashCardLedgerRepository implements CashCardLedgerRepository {
+
+    private record Card(String owner, long cardId) {
+    }
+
+    private static final class History {
+        final ReentrantLock lock = new ReentrantLock(); /* not synchronized: doesn't pin virtual threads */
+        final List<CashCardLedgerEntry> entries = new ArrayList<>();
+        long lastSequence;
+    }
+
+    private final Map<Card, History> histories = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+
+    @Override
+    public Slice<LedgerEntryView> findHistory(String owner, long cardId, long after, Pageable pageable) {
+        History history = histories.get(new Card(owner, cardId));
+        if (history == null) {
+            return new SliceImpl<>(List.of(), pageable, false);
+        }
+        List<LedgerEntryView> views = new ArrayList<>();
+        history.lock.lock();
+        try {
+            int low = 0;
+            int high = history.entries.size();
+            while (low < high) { /* first entry after "after" */
+                int middle = (low + high) >>> 1;
+                if (history.entries.get(middle).getSequence() <= after) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            long from = low + (pageable.isPaged() ? pageable.getOffset() : 0);
+            long to = pageable.isPaged() ? Math.min(from + pageable.getPageSize() + 1, history.entries.size()) : history.entries.size();
+            for (long i = from; i < to; i++) {
+                CashCardLedgerEntry entry = history.entries.get((int) i);
+                views.add(new LedgerEntryView(entry.getSequence(), entry.getCardId(), entry.getDelta(), entry.getRecordedAt()));
+            }
+        } finally {
+            history.lock.unlock();
+        }
+        boolean hasNext = pageable.isPaged() && views.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? views.subList(0, pageable.getPageSize()) : views, pageable, hasNext);
+    }
+
+    @Override
+    public boolean existsByOwnerAndCardId(String owner, Long cardId) {
+        return cardId != null && histories.containsKey(new Card(owner, cardId));
+    }
+
+    @Override
+    public long findLastSequence(String owner, long cardId) {
+        History history = histories.get(new Card(owner, cardId));
+        if (history == null) {
+            return 0;
+        }
+        history.lock.lock();
+        try {
+            return history.lastSequence;
+        } finally {
+            history.lock.unlock();
+        }
+    }
+
+    /*
+     * The sequence of a new entry is drawn while the CashCard's list is locked, so the list stays in sequence order.
+     * An entry with the id of a stored one replaces its delta and time, in its place: card, owner and sequence stay.
+     * One with an id that isn't stored is saved as a new entry, under a new id, like JPA merges an unknown one
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <S extends CashCardLedgerEntry> S save(S entry) {
+        if (entry.getId() != null) {
+            CashCardLedgerEntry replaced = replace(entry);
+            if (replaced != null) {
+                return (S) replaced;
+            }
+        }
+        History history = histories.computeIfAbsent(new Card(entry.getOwner(), entry.getCardId()), card -> new History());
+        history.lock.lock();
+        try {
+            CashCardLedgerEntry saved = new CashCardLedgerEntry(ids.incrementAndGet(), entry.getCardId(), ++history.lastSequence,
+                    entry.getOwner(), entry.getDelta(), entry.getRecordedAt());
+            history.entries.add(saved);
+            return (S) saved;
+        } finally {
+            history.lock.unlock();
+        }
+    }
+
+    private CashCardLedgerEntry replace(CashCardLedgerEntry entry) {
+        for (History history : histories.values()) {
+            history.lock.lock();
+            try {
+                for (int i = 0; i < history.entries.size(); i++) {
+                    CashCardLedgerEntry stored = history.entries.get(i);
+                    if (stored.getId().equals(entry.getId())) {
+                        CashCardLedgerEntry replaced = new CashCardLedgerEntry(stored.getId(), stored.getCardId(), stored.getSequence(),
+                                stored.getOwner(), entry.getDelta(), entry.getRecordedAt());
+                        history.entries.set(i, replaced);
+                        return replaced;
+                    }
+                }
+            } finally {
+                history.lock.unlock();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public <S extends CashCardLedgerEntry> Iterable<S> saveAll(Iterable<S> entries) {
+        List<S> saved = new ArrayList<>();
+        entries.forEach(entry -> saved.add(save(entry)));
+        return saved;
+    }
+
+    @Override
+    public Optional<CashCardLedgerEntry> findById(Long id) {
+        return all().stream().filter(entry -> entry.getId().equals(id)).findFirst();
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return findById(id).isPresent();
+    }
+
+    @Override
+    public Iterable<CashCardLedgerEntry> findAll() {
+        return all();
+    }
+
+    @Override
+    public Iterable<CashCardLedgerEntry> findAllById(Iterable<Long> ids) {
+        List<CashCardLedgerEntry> found = new ArrayList<>();
+        ids.forEach(id -> findById(id).ifPresent(found::add));
+        return found;
+    }
+
+    @Override
+    public long count() {
+        return all().size();
+    }
+
+    @Override
+    public void deleteById(Long id) {
+        remove(entry -> entry.getId().equals(id));
+    }
+
+    @Override
+    public void delete(CashCardLedgerEntry entry) {
+        deleteById(entry.getId());
+    }
+
+    @Override
+    public void deleteAllById(Iterable<? extends Long> ids) {
+        ids.forEach(this::deleteById);
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends CashCardLedgerEntry> entries) {
+        entries.forEach(this::delete);
+    }
+
+    @Override
+    public void deleteAll() {
+        histories.clear();
+    }
+
+    /* Every entry in the order they were saved */
+    private List<CashCardLedgerEntry> all() {
+        List<CashCardLedgerEntry> all = new ArrayList<>();
+        for (History history : histories.values()) {
+            history.lock.lock();
+            try {
+                all.addAll(history.entries);
+            } finally {
+                history.lock.unlock();
+            }
+        }
+        all.sort(Comparator.comparing(CashCardLedgerEntry::getId));
+        return all;
+    }
+
+    private void remove(Predicate<CashCardLedgerEntry> filter) {
+        for (History history : histories.values()) {
+            history.lock.lock();
+            try {
+                history.entries.removeIf(filter);
+            } finally {
+                history.lock.unlock();
+            }
+        }
+    }
+}
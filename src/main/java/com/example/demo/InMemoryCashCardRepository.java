@@ -0,0 +1,334 @@
+package com.example.demo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mapping.PropertyReferenceException;
+import org.springframework.data.util.TypeInformation;
+import org.springframework.stereotype.Repository;
+
+/**
+ * CashCardRepository of the in-memory profile (application-in-memory.properties):
+ * no JPA, no database, every CashCard lives in the OwnerColumns of its owner.
+ *
+ * The owner-scoped finders and paging behave like their queries in
+ * CashCardRepository: amount-ordered slices and keyset pages walk the owner's
+ * columns from the right position on, so they cost the CashCards returned (plus
+ * the ones skipped by page offsets), however many the owner has. Ties of amount
+ * are ordered by id. Other sorts copy and sort the owner's CashCards.
+ *
+ * Owners are partitions, not a column: an owner's name is stored once, and
+ * writes only lock the owner they write to. Lookups that don't name an owner
+ * (the CrudRepository methods) visit every owner. Ids come from one sequence
+ * starting at 1, nothing survives a restart.
+ */
+@Repository
+@Profile("in-memory")
+class InMemoryCashCardRepository implements CashCardRepository {
+
+    private static final TypeInformation<CashCard> CASH_CARD = TypeInformation.of(CashCard.class);
+
+    private final Map<String, OwnerColumns> owners = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Override
+    public CashCard findByIdAndOwner(Long id, String owner) {
+        CashCardView view = findViewByIdAndOwner(id, owner);
+        return view != null ? cashCard(view) : null;
+    }
+
+    @Override
+    public Slice<CashCard> findByOwner(String owner, Pageable pageable) {
+        return findViewsByOwner(owner, pageable).map(InMemoryCashCardRepository::cashCard);
+    }
+
+    @Override
+    public boolean existsByIdAndOwner(Long id, String owner) {
+        OwnerColumns columns = owners.get(owner);
+        return id != null && columns != null && columns.contains(id);
+    }
+
+    @Override
+    public CashCardView findViewByIdAndOwner(Long id, String owner) {
+        OwnerColumns columns = owners.get(owner);
+        return id != null && columns != null ? columns.find(id) : null;
+    }
+
+    @Override
+    public Slice<CashCardView> findViewsByOwner(String owner, Pageable pageable) {
+        OwnerColumns columns = owners.get(owner);
+        if (columns == null) {
+            return new SliceImpl<>(List.of(), pageable, false);
+        }
+        Sort.Order byAmount = pageable.getSort().getOrderFor("amount");
+        if (byAmount != null && pageable.getSort().stream().count() == 1) {
+            return byAmount.isAscending()
+                    ? slice(columns.ascending(OwnerColumns.LOWEST, Long.MIN_VALUE, OwnerColumns.HIGHEST, offset(pageable), limit(pageable)), pageable)
+                    : slice(columns.descending(OwnerColumns.HIGHEST, Long.MAX_VALUE, OwnerColumns.LOWEST, offset(pageable), limit(pageable)), pageable);
+        }
+        List<CashCardView> all = new ArrayList<>(columns.ascending(OwnerColumns.LOWEST, Long.MIN_VALUE, OwnerColumns.HIGHEST, 0, Integer.MAX_VALUE));
+        all.sort(comparator(pageable.getSort()));
+        int from = (int) Math.min(offset(pageable), all.size());
+        return slice(all.subList(from, (int) Math.min((long) from + limit(pageable), all.size())), pageable);
+    }
+
+    @Override
+    public List<CashCardView> findViewsByOwnerAndIdIn(String owner, Collection<Long> ids) {
+        OwnerColumns columns = owners.get(owner);
+        if (columns == null) {
+            return List.of();
+        }
+        List<CashCardView> views = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            CashCardView view = id != null ? columns.find(id) : null;
+            if (view != null) {
+                views.add(view);
+            }
+        }
+        return views;
+    }
+
+    @Override
+    public Stream<CashCardView> streamByOwner(String owner) {
+        OwnerColumns columns = owners.get(owner);
+        if (columns == null) {
+            return Stream.empty();
+        }
+        LongDoubleHashMap snapshot = columns.snapshot();
+        long[] ids = snapshot.keys();
+        Arrays.sort(ids);
+        return Arrays.stream(ids).mapToObj(id -> new CashCardView(id, snapshot.get(id), owner));
+    }
+
+    @Override
+    public Double updateAmountByIdAndOwner(Long id, String owner, Double amount) {
+        OwnerColumns columns = owners.get(owner);
+        return id != null && columns != null ? columns.update(id, required(amount)) : null;
+    }
+
+    @Override
+    public Double deleteByIdAndOwner(Long id, String owner) {
+        OwnerColumns columns = owners.get(owner);
+        return id != null && columns != null ? columns.delete(id) : null;
+    }
+
+    /* No transactions to hold a lock for: the writes above read and change the amount in one step */
+    @Override
+    public Double lockAmountByIdAndOwner(Long id, String owner) {
+        CashCardView view = findViewByIdAndOwner(id, owner);
+        return view != null ? view.amount() : null;
+    }
+
+    @Override
+    public int setAmountByIdAndOwner(Long id, String owner, Double amount) {
+        return updateAmountByIdAndOwner(id, owner, amount) != null ? 1 : 0;
+    }
+
+    @Override
+    public int removeByIdAndOwner(Long id, String owner) {
+        return deleteByIdAndOwner(id, owner) != null ? 1 : 0;
+    }
+
+    @Override
+    public Slice<CashCardView> findFirstSliceByOwner(String owner, Pageable pageable) {
+        return findAscendingByOwnerAndAmountBetween(owner, OwnerColumns.LOWEST, OwnerColumns.HIGHEST, Long.MIN_VALUE, pageable);
+    }
+
+    @Override
+    public Slice<CashCardView> findSliceByOwnerAfter(String owner, double amount, long id, Pageable pageable) {
+        return findAscendingByOwnerAndAmountBetween(owner, amount, OwnerColumns.HIGHEST, id, pageable);
+    }
+
+    @Override
+    public Slice<CashCardView> findAscendingByOwnerAndAmountBetween(String owner, double from, double to, long id, Pageable pageable) {
+        OwnerColumns columns = owners.get(owner);
+        return slice(columns != null ? columns.ascending(from, id, to, offset(pageable), limit(pageable)) : List.of(), pageable);
+    }
+
+    @Override
+    public Slice<CashCardView> findDescendingByOwnerAndAmountBetween(String owner, double from, double to, long id, Pageable pageable) {
+        OwnerColumns columns = owners.get(owner);
+        return slice(columns != null ? columns.descending(from, id, to, offset(pageable), limit(pageable)) : List.of(), pageable);
+    }
+
+    @Override
+    public List<OwnerAmountCount> countByOwnerAndAmount() {
+        List<OwnerAmountCount> counts = new ArrayList<>();
+        owners.values().forEach(columns -> counts.addAll(columns.countByAmount()));
+        return counts;
+    }
+
+    /*
+     * Like a merge: a CashCard without id, or with an id nobody has, is added with a new id.
+     * The saved CashCard is returned, the given one keeps its id.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <S extends CashCard> S save(S cashCard) {
+        String owner = required(cashCard.getOwner());
+        double amount = required(cashCard.getAmount());
+        OwnerColumns current = cashCard.getId() != null ? ownerOf(cashCard.getId()) : null;
+        if (current != null && current.owner().equals(owner)) {
+            current.update(cashCard.getId(), amount);
+            return (S) new CashCard(cashCard.getId(), amount, owner);
+        }
+        long id = current != null && current.delete(cashCard.getId()) != null ? cashCard.getId() : sequence.incrementAndGet();
+        owners.computeIfAbsent(owner, OwnerColumns::new).insert(id, amount);
+        return (S) new CashCard(id, amount, owner);
+    }
+
+    @Override
+    public <S extends CashCard> Iterable<S> saveAll(Iterable<S> cashCards) {
+        List<S> saved = new ArrayList<>();
+        cashCards.forEach(cashCard -> saved.add(save(cashCard)));
+        return saved;
+    }
+
+    @Override
+    public Optional<CashCard> findById(Long id) {
+        OwnerColumns columns = ownerOf(id);
+        return Optional.ofNullable(columns != null ? columns.find(id) : null).map(InMemoryCashCardRepository::cashCard);
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return ownerOf(id) != null;
+    }
+
+    @Override
+    public Iterable<CashCard> findAll() {
+        return findAll(Sort.by("id"));
+    }
+
+    @Override
+    public Iterable<CashCard> findAllById(Iterable<Long> ids) {
+        List<CashCard> found = new ArrayList<>();
+        ids.forEach(id -> findById(id).ifPresent(found::add));
+        return found;
+    }
+
+    @Override
+    public long count() {
+        return owners.values().stream().mapToLong(OwnerColumns::size).sum();
+    }
+
+    @Override
+    public void deleteById(Long id) {
+        OwnerColumns columns = ownerOf(id);
+        if (columns != null) {
+            columns.delete(id);
+        }
+    }
+
+    @Override
+    public void delete(CashCard cashCard) {
+        deleteById(cashCard.getId());
+    }
+
+    @Override
+    public void deleteAllById(Iterable<? extends Long> ids) {
+        ids.forEach(this::deleteById);
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends CashCard> cashCards) {
+        cashCards.forEach(this::delete);
+    }
+
+    @Override
+    public void deleteAll() {
+        owners.values().forEach(OwnerColumns::clear);
+    }
+
+    @Override
+    public Iterable<CashCard> findAll(Sort sort) {
+        return all(sort);
+    }
+
+    @Override
+    public Page<CashCard> findAll(Pageable pageable) {
+        List<CashCard> all = all(pageable.getSort());
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(all);
+        }
+        int from = (int) Math.min(pageable.getOffset(), all.size());
+        return new PageImpl<>(all.subList(from, Math.min(from + pageable.getPageSize(), all.size())), pageable, all.size());
+    }
+
+    private List<CashCard> all(Sort sort) {
+        List<CashCardView> all = new ArrayList<>();
+        owners.values().forEach(columns -> all.addAll(
+                columns.ascending(OwnerColumns.LOWEST, Long.MIN_VALUE, OwnerColumns.HIGHEST, 0, Integer.MAX_VALUE)));
+        all.sort(comparator(sort));
+        return all.stream().map(InMemoryCashCardRepository::cashCard).toList();
+    }
+
+    private OwnerColumns ownerOf(Long id) {
+        if (id == null) {
+            return null;
+        }
+        for (OwnerColumns columns : owners.values()) {
+            if (columns.contains(id)) {
+                return columns;
+            }
+        }
+        return null;
+    }
+
+    /* One more than asked for tells whether there's a next slice, like the LIMIT of a Slice query */
+    private static int limit(Pageable pageable) {
+        return pageable.isPaged() ? pageable.getPageSize() + 1 : Integer.MAX_VALUE;
+    }
+
+    private static long offset(Pageable pageable) {
+        return pageable.isPaged() ? pageable.getOffset() : 0;
+    }
+
+    private static Slice<CashCardView> slice(List<CashCardView> views, Pageable pageable) {
+        boolean hasNext = pageable.isPaged() && views.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? views.subList(0, pageable.getPageSize()) : views, pageable, hasNext);
+    }
+
+    /* The order of sort over the properties of CashCard, throwing PropertyReferenceException for others like a query would */
+    private static Comparator<CashCardView> comparator(Sort sort) {
+        Comparator<CashCardView> comparator = (left, right) -> 0;
+        for (Sort.Order order : sort) {
+            Comparator<CashCardView> byProperty = switch (order.getProperty()) {
+            case "id" -> Comparator.comparing(CashCardView::id);
+            case "amount" -> Comparator.comparing(CashCardView::amount);
+            case "owner" -> Comparator.comparing(CashCardView::owner);
+            default -> throw new PropertyReferenceException(order.getProperty(), CASH_CARD, List.of());
+            };
+            comparator = comparator.thenComparing(order.isAscending() ? byProperty : byProperty.reversed());
+        }
+        return comparator;
+    }
+
+    private static CashCard cashCard(CashCardView view) {
+        return new CashCard(view.id(), view.amount(), view.owner());
+    }
+
+    /* The columns are NOT NULL in the JPA mapping too */
+    private static <T> T required(T value) {
+        if (value == null) {
+            throw new DataIntegrityViolationException("CashCard amount and owner are required");
+        }
+        return value;
+    }
+}
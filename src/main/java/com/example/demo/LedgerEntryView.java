@@ -0,0 +1,18 @@
+package com.example.demo;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Read-only projection of a CashCardLedgerEntry, one element of GET /cashcards/{id}/history.
+ */
+record LedgerEntryView(Long sequence, Long cardId, BigDecimal delta, Instant recordedAt) {
+
+    /* 100.0, 50.25: the decimals the delta needs, at least one, whatever the scale of the column */
+    LedgerEntryView {
+        delta = delta.stripTrailingZeros();
+        if (delta.scale() < 1) {
+            delta = delta.setScale(1);
+        }
+    }
+}
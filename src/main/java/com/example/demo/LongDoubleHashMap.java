@@ -0,0 +1,144 @@
+package com.example.demo;
+
+/**
+ * Map from long keys to double values without boxing either: open addressing
+ * with linear probing over two parallel arrays, deletions shift the following
+ * entries of the run back instead of leaving tombstones.
+ *
+ * Key 0 marks a free slot, so it can't be stored (CashCard ids start at 1).
+ * Not thread-safe, OwnerColumns guards its map with its own lock.
+ */
+final class LongDoubleHashMap {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private double[] values;
+    private int size;
+
+    LongDoubleHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    private LongDoubleHashMap(int capacity) {
+        keys = new long[capacity];
+        values = new double[capacity];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean containsKey(long key) {
+        return slotOf(key) >= 0;
+    }
+
+    /* Only meaningful when containsKey(key) */
+    double get(long key) {
+        int slot = slotOf(key);
+        return slot >= 0 ? values[slot] : Double.NaN;
+    }
+
+    void put(long key, double value) {
+        if (key == 0) {
+            throw new IllegalArgumentException("Key 0 can't be stored");
+        }
+        if ((size + 1) * 4L > keys.length * 3L) { /* load factor 0.75 */
+            resize(keys.length * 2);
+        }
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (keys[slot] == 0) {
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value;
+    }
+
+    /* Whether key was there */
+    boolean remove(long key) {
+        int slot = slotOf(key);
+        if (slot < 0) {
+            return false;
+        }
+        int mask = keys.length - 1;
+        /* Moves back every later entry of the run that may no longer be found past the new gap */
+        for (int next = (slot + 1) & mask; keys[next] != 0; next = (next + 1) & mask) {
+            int home = hash(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                keys[slot] = keys[next];
+                values[slot] = values[next];
+                slot = next;
+            }
+        }
+        keys[slot] = 0;
+        size--;
+        return true;
+    }
+
+    /* The keys in no particular order */
+    long[] keys() {
+        long[] present = new long[size];
+        int count = 0;
+        for (long key : keys) {
+            if (key != 0) {
+                present[count++] = key;
+            }
+        }
+        return present;
+    }
+
+    LongDoubleHashMap copy() {
+        LongDoubleHashMap copy = new LongDoubleHashMap(0);
+        copy.keys = keys.clone();
+        copy.values = values.clone();
+        copy.size = size;
+        return copy;
+    }
+
+    void clear() {
+        keys = new long[MIN_CAPACITY];
+        values = new double[MIN_CAPACITY];
+        size = 0;
+    }
+
+    private int slotOf(long key) {
+        if (key == 0) {
+            return -1;
+        }
+        int mask = keys.length - 1;
+        for (int slot = hash(key) & mask; keys[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        double[] oldValues = values;
+        keys = new long[capacity];
+        values = new double[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = hash(oldKeys[i]) & mask;
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    /* Sequential ids would otherwise fill one run of slots */
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
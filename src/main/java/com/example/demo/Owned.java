@@ -0,0 +1,9 @@
+package com.example.demo;
+
+/**
+ * A row belonging to one owner, so it lives on that owner's shard (see CashCardIdGenerator).
+ */
+interface Owned {
+
+    String getOwner();
+}
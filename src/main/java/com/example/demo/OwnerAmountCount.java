@@ -0,0 +1,7 @@
+package com.example.demo;
+
+/*
+ * Number of CashCards an owner has with a given amount (a row of CashCardRepository.countByOwnerAndAmount)
+ */
+record OwnerAmountCount(String owner, Double amount, long count) {
+}
@@ -0,0 +1,144 @@
+package com.example.demo;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Per-owner count, total, min and max of CashCard amounts, kept in memory and
+ * updated incrementally from CashCardEvents, so a summary read costs the same
+ * whatever the number of cards.
+ *
+ * The count is a LongAdder, the total an exact BigDecimal (adding and subtracting
+ * amounts without floating point drift, whatever their size) spread over cells like a
+ * LongAdder once writes of the owner collide. Min and max come from a skip list of
+ * amount -> number of cards, whose first and last keys are at hand. The
+ * aggregates are rebuilt from the Cash_card table (of every shard) at startup, before the web
+ * server accepts requests.
+ *
+ * Events of concurrent writes can arrive in another order than their commits: a
+ * delete before the create of its card. Every change is therefore applied as a
+ * plain addition or subtraction, which don't depend on the order; an amount's
+ * number of cards may be negative until the create it waits for arrives, and
+ * min/max skip those amounts.
+ */
+@Component
+class OwnerBalanceSummaries implements SmartInitializingSingleton {
+
+    private final CashCardRepository cashCardRepository;
+    private final CashCardShards cashCardShards;
+    private final Map<String, OwnerBalance> balances = new ConcurrentHashMap<>();
+
+    private static final class OwnerBalance {
+        final LongAdder count = new LongAdder();
+        final BigDecimalAdder total = new BigDecimalAdder();
+        final ConcurrentSkipListMap<Double, Long> amounts = new ConcurrentSkipListMap<>();
+
+        /* cards < 0 to remove */
+        void add(double amount, long cards) {
+            count.add(cards);
+            total.add(BigDecimal.valueOf(amount).multiply(BigDecimal.valueOf(cards)));
+            amounts.merge(amount, cards, (had, added) -> had + added == 0 ? null : had + added);
+        }
+    }
+
+    /* A single total until two adds collide, then one per cell, picked at random by each add */
+    private static final class BigDecimalAdder {
+        private static final int CELLS = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1);
+
+        private final AtomicReference<BigDecimal> base = new AtomicReference<>(BigDecimal.ZERO);
+        private final AtomicReference<AtomicReferenceArray<BigDecimal>> cells = new AtomicReference<>();
+
+        void add(BigDecimal value) {
+            AtomicReferenceArray<BigDecimal> spread = cells.get();
+            if (spread == null) {
+                BigDecimal total = base.get();
+                if (base.compareAndSet(total, total.add(value))) {
+                    return;
+                }
+                cells.compareAndSet(null, zeros());
+                spread = cells.get();
+            }
+            for (int cell = ThreadLocalRandom.current().nextInt(CELLS);; cell = (cell + 1) % CELLS) {
+                BigDecimal total = spread.get(cell);
+                if (spread.compareAndSet(cell, total, total.add(value))) {
+                    return;
+                }
+            }
+        }
+
+        BigDecimal sum() {
+            BigDecimal sum = base.get();
+            AtomicReferenceArray<BigDecimal> spread = cells.get();
+            for (int cell = 0; spread != null && cell < CELLS; cell++) {
+                sum = sum.add(spread.get(cell));
+            }
+            return sum;
+        }
+
+        private static AtomicReferenceArray<BigDecimal> zeros() {
+            AtomicReferenceArray<BigDecimal> zeros = new AtomicReferenceArray<>(CELLS);
+            for (int cell = 0; cell < CELLS; cell++) {
+                zeros.set(cell, BigDecimal.ZERO);
+            }
+            return zeros;
+        }
+    }
+
+    OwnerBalanceSummaries(CashCardRepository cashCardRepository, CashCardShards cashCardShards) {
+        this.cashCardRepository = cashCardRepository;
+        this.cashCardShards = cashCardShards;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        for (int shard = 0; shard < cashCardShards.count(); shard++) {
+            for (OwnerAmountCount row : cashCardShards.onShard(shard, cashCardRepository::countByOwnerAndAmount)) {
+                balance(row.owner()).add(row.amount(), row.count());
+            }
+        }
+    }
+
+    CashCardSummary summary(String owner) {
+        OwnerBalance balance = balances.get(owner);
+        if (balance == null) {
+            return new CashCardSummary(owner, 0, 0.0, null, null);
+        }
+        return new CashCardSummary(owner, balance.count.sum(), balance.total.sum().doubleValue(),
+                held(balance.amounts), held(balance.amounts.descendingMap()));
+    }
+
+    /* The first amount some card has, skipping the ones still waiting for their creates */
+    private static Double held(Map<Double, Long> amounts) {
+        for (Map.Entry<Double, Long> amount : amounts.entrySet()) {
+            if (amount.getValue() > 0) {
+                return amount.getKey();
+            }
+        }
+        return null;
+    }
+
+    @EventListener
+    void on(CashCardEvent event) {
+        OwnerBalance balance = balance(event.owner());
+        if (event.previousAmount() != null) {
+            balance.add(event.previousAmount(), -1);
+        }
+        if (event.amount() != null) {
+            balance.add(event.amount(), 1);
+        }
+    }
+
+    private OwnerBalance balance(String owner) {
+        return balances.computeIfAbsent(owner, key -> new OwnerBalance());
+    }
+}
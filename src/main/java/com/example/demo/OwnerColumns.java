@@ -0,0 +1,352 @@
+package com.example.demo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The CashCards of one owner, kept as columns of primitives sorted by (amount, id):
+ * the in-memory counterpart of the (owner, amount, id) index, holding the whole row.
+ *
+ * The columns are cut into chunks of at most CHUNK entries, so an insert or a
+ * delete moves at most one chunk's worth of entries rather than everything after
+ * it, while reads still scan plain arrays. A LongDoubleHashMap from id to amount
+ * finds the position of a given id. Amounts are ordered by Double.compare.
+ *
+ * One read-write lock per owner: writes of different owners never wait on each
+ * other, reads of an owner only wait on that owner's writes.
+ */
+final class OwnerColumns {
+
+    /* The ends of the Double.compare order (NaN sorts after every other amount): as bounds they mean no bound */
+    static final double LOWEST = Double.NEGATIVE_INFINITY;
+    static final double HIGHEST = Double.NaN;
+
+    private static final int CHUNK = 512;
+    private static final int FIRST_CHUNK = 8; /* the first chunk grows up to CHUNK, owners with few CashCards stay small */
+
+    private final String owner;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock(); /* not synchronized: doesn't pin virtual threads */
+    private final LongDoubleHashMap amountsById = new LongDoubleHashMap();
+
+    /* Chunk c holds sizes[c] entries, in order, ids[c][i] and amounts[c][i] being one CashCard */
+    private long[][] ids = new long[4][];
+    private double[][] amounts = new double[4][];
+    private int[] sizes = new int[4];
+    private int chunks;
+
+    OwnerColumns(String owner) {
+        this.owner = owner;
+    }
+
+    String owner() {
+        return owner;
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return amountsById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /* null when owner has no CashCard with that id */
+    CashCardView find(long id) {
+        lock.readLock().lock();
+        try {
+            return amountsById.containsKey(id) ? new CashCardView(id, amountsById.get(id), owner) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    boolean contains(long id) {
+        lock.readLock().lock();
+        try {
+            return amountsById.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /* Adds a CashCard with a new id */
+    void insert(long id, double amount) {
+        lock.writeLock().lock();
+        try {
+            amountsById.put(id, amount);
+            add(amount, id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /* The amount before the update, null when owner has no CashCard with that id */
+    Double update(long id, double amount) {
+        lock.writeLock().lock();
+        try {
+            if (!amountsById.containsKey(id)) {
+                return null;
+            }
+            double previousAmount = amountsById.get(id);
+            if (Double.compare(previousAmount, amount) != 0) {
+                remove(previousAmount, id);
+                add(amount, id);
+                amountsById.put(id, amount);
+            }
+            return previousAmount;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /* The amount before the delete, null when owner has no CashCard with that id */
+    Double delete(long id) {
+        lock.writeLock().lock();
+        try {
+            if (!amountsById.containsKey(id)) {
+                return null;
+            }
+            double previousAmount = amountsById.get(id);
+            amountsById.remove(id);
+            remove(previousAmount, id);
+            return previousAmount;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void clear() {
+        lock.writeLock().lock();
+        try {
+            amountsById.clear();
+            ids = new long[4][];
+            amounts = new double[4][];
+            sizes = new int[4];
+            chunks = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /*
+     * Ascending from the first CashCard after (amount, id), as long as amounts are at most to:
+     * skips skip of them, then returns at most limit
+     */
+    List<CashCardView> ascending(double amount, long id, double to, long skip, int limit) {
+        List<CashCardView> views = new ArrayList<>(Math.min(limit, 64));
+        lock.readLock().lock();
+        try {
+            int c = chunkOf(amount, id);
+            int i = c < 0 ? 0 : upperBound(c, amount, id);
+            for (c = Math.max(c, 0); c < chunks && views.size() < limit; c++, i = 0) {
+                long[] chunkIds = ids[c];
+                double[] chunkAmounts = amounts[c];
+                if (skip >= sizes[c] - i && Double.compare(chunkAmounts[sizes[c] - 1], to) <= 0) { /* deep pages skip whole chunks */
+                    skip -= sizes[c] - i;
+                    continue;
+                }
+                for (; i < sizes[c] && views.size() < limit; i++) {
+                    if (Double.compare(chunkAmounts[i], to) > 0) {
+                        return views;
+                    }
+                    if (skip > 0) {
+                        skip--;
+                    } else {
+                        views.add(new CashCardView(chunkIds[i], chunkAmounts[i], owner));
+                    }
+                }
+            }
+            return views;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /*
+     * Descending from the last CashCard before (amount, id), as long as amounts are at least to:
+     * skips skip of them, then returns at most limit
+     */
+    List<CashCardView> descending(double amount, long id, double to, long skip, int limit) {
+        List<CashCardView> views = new ArrayList<>(Math.min(limit, 64));
+        lock.readLock().lock();
+        try {
+            int c = chunkOf(amount, id);
+            int i = c < 0 ? -1 : lowerBound(c, amount, id) - 1;
+            for (; c >= 0 && views.size() < limit; c--, i = c >= 0 ? sizes[c] - 1 : -1) {
+                long[] chunkIds = ids[c];
+                double[] chunkAmounts = amounts[c];
+                if (skip >= i + 1 && Double.compare(chunkAmounts[0], to) >= 0) {
+                    skip -= i + 1;
+                    continue;
+                }
+                for (; i >= 0 && views.size() < limit; i--) {
+                    if (Double.compare(chunkAmounts[i], to) < 0) {
+                        return views;
+                    }
+                    if (skip > 0) {
+                        skip--;
+                    } else {
+                        views.add(new CashCardView(chunkIds[i], chunkAmounts[i], owner));
+                    }
+                }
+            }
+            return views;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /* A copy of the id to amount map, for reads that outlive the lock */
+    LongDoubleHashMap snapshot() {
+        lock.readLock().lock();
+        try {
+            return amountsById.copy();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /* How many CashCards there are of each amount, in ascending order of amounts */
+    List<OwnerAmountCount> countByAmount() {
+        List<OwnerAmountCount> rows = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            double amount = Double.NaN;
+            long count = 0;
+            for (int c = 0; c < chunks; c++) {
+                for (int i = 0; i < sizes[c]; i++) {
+                    if (count > 0 && Double.compare(amounts[c][i], amount) != 0) {
+                        rows.add(new OwnerAmountCount(owner, amount, count));
+                        count = 0;
+                    }
+                    amount = amounts[c][i];
+                    count++;
+                }
+            }
+            if (count > 0) {
+                rows.add(new OwnerAmountCount(owner, amount, count));
+            }
+            return rows;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void add(double amount, long id) {
+        if (chunks == 0) {
+            ids[0] = new long[FIRST_CHUNK];
+            amounts[0] = new double[FIRST_CHUNK];
+            chunks = 1;
+        }
+        int c = Math.max(chunkOf(amount, id), 0);
+        int i = lowerBound(c, amount, id);
+        if (sizes[c] == ids[c].length && sizes[c] < CHUNK) {
+            ids[c] = Arrays.copyOf(ids[c], sizes[c] * 2);
+            amounts[c] = Arrays.copyOf(amounts[c], sizes[c] * 2);
+        } else if (sizes[c] == CHUNK) {
+            split(c);
+            if (i > sizes[c]) {
+                i -= sizes[c];
+                c++;
+            }
+        }
+        System.arraycopy(ids[c], i, ids[c], i + 1, sizes[c] - i);
+        System.arraycopy(amounts[c], i, amounts[c], i + 1, sizes[c] - i);
+        ids[c][i] = id;
+        amounts[c][i] = amount;
+        sizes[c]++;
+    }
+
+    private void remove(double amount, long id) {
+        int c = chunkOf(amount, id);
+        int i = lowerBound(c, amount, id);
+        System.arraycopy(ids[c], i + 1, ids[c], i, sizes[c] - i - 1);
+        System.arraycopy(amounts[c], i + 1, amounts[c], i, sizes[c] - i - 1);
+        if (--sizes[c] == 0) {
+            removeChunk(c);
+        }
+    }
+
+    /* Moves the upper half of full chunk c into a new chunk right after it */
+    private void split(int c) {
+        if (chunks == ids.length) {
+            ids = Arrays.copyOf(ids, chunks * 2);
+            amounts = Arrays.copyOf(amounts, chunks * 2);
+            sizes = Arrays.copyOf(sizes, chunks * 2);
+        }
+        System.arraycopy(ids, c + 1, ids, c + 2, chunks - c - 1);
+        System.arraycopy(amounts, c + 1, amounts, c + 2, chunks - c - 1);
+        System.arraycopy(sizes, c + 1, sizes, c + 2, chunks - c - 1);
+        int half = CHUNK / 2;
+        ids[c + 1] = new long[CHUNK];
+        amounts[c + 1] = new double[CHUNK];
+        System.arraycopy(ids[c], half, ids[c + 1], 0, CHUNK - half);
+        System.arraycopy(amounts[c], half, amounts[c + 1], 0, CHUNK - half);
+        sizes[c + 1] = CHUNK - half;
+        sizes[c] = half;
+        chunks++;
+    }
+
+    private void removeChunk(int c) {
+        System.arraycopy(ids, c + 1, ids, c, chunks - c - 1);
+        System.arraycopy(amounts, c + 1, amounts, c, chunks - c - 1);
+        System.arraycopy(sizes, c + 1, sizes, c, chunks - c - 1);
+        chunks--;
+        ids[chunks] = null;
+        amounts[chunks] = null;
+        sizes[chunks] = 0;
+    }
+
+    /* The last chunk whose first entry isn't after (amount, id), -1 when every chunk starts after it */
+    private int chunkOf(double amount, long id) {
+        int low = 0;
+        int high = chunks - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (compare(amounts[middle][0], ids[middle][0], amount, id) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return high;
+    }
+
+    /* Index of the first entry of chunk c at or after (amount, id) */
+    private int lowerBound(int c, double amount, long id) {
+        int low = 0;
+        int high = sizes[c];
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(amounts[c][middle], ids[c][middle], amount, id) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /* Index of the first entry of chunk c after (amount, id) */
+    private int upperBound(int c, double amount, long id) {
+        int low = 0;
+        int high = sizes[c];
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(amounts[c][middle], ids[c][middle], amount, id) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static int compare(double amount, long id, double otherAmount, long otherId) {
+        int byAmount = Double.compare(amount, otherAmount);
+        return byAmount != 0 ? byAmount : Long.compare(id, otherId);
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.demo;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Per-owner modification counter behind the ETags of the GET endpoints.
+ *
+ * Every committed write of an owner (see CashCardEvent) moves that owner to a new
+ * version, so a version seen by a reader is only current as long as none of the
+ * owner's CashCards changed. Versions are drawn from one sequence that starts at
+ * the startup time, which keeps them distinct across owners and restarts.
+ *
+ * The version is bumped after the write committed and read before a GET loads
+ * anything: a response can carry an older version than its data, never a newer one.
+ */
+@Component
+class OwnerVersions {
+
+    private static final class Owner {
+        final AtomicLong version;
+        final ReentrantLock lock = new ReentrantLock(); /* not synchronized: doesn't pin virtual threads */
+
+        Owner(long version) {
+            this.version = new AtomicLong(version);
+        }
+    }
+
+    private final AtomicLong sequence = new AtomicLong(System.currentTimeMillis() << 16);
+    private final long initialVersion = sequence.get();
+    private final Map<String, Owner> owners = new ConcurrentHashMap<>();
+
+    /* Strong ETag of everything owner can currently read */
+    String eTag(String owner) {
+        Owner state = owners.get(owner);
+        return '"' + Long.toString(state != null ? state.version.get() : initialVersion, 36) + '"';
+    }
+
+    @EventListener
+    void on(CashCardEvent event) {
+        /* max: concurrent writes of one owner may get their numbers in one order and land in the other */
+        owner(event.owner()).version.accumulateAndGet(sequence.incrementAndGet(), Math::max);
+    }
+
+    /*
+     * Runs write while no other write of owner going through here runs, so an
+     * If-Match checked inside write still holds when write's own update commits
+     */
+    <T> T locked(String owner, Supplier<T> write) {
+        ReentrantLock lock = owner(owner).lock;
+        lock.lock();
+        try {
+            return write.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Owner owner(String owner) {
+        return owners.computeIfAbsent(owner, name -> new Owner(initialVersion));
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.demo;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+/**
+ * Read replicas, switched on by configuring cashcard.datasource.replicas[0].url:
+ * the primary is still configured by spring.datasource.*, each replica by its own
+ * url/username/password, and the application's DataSource routes between them
+ * (see ReplicaRoutingDataSource). Replication itself is the database's business.
+ */
+@Configuration
+@ConditionalOnProperty("cashcard.datasource.replicas[0].url")
+@Profile("!in-memory") /* no DataSource to route in the in-memory profile */
+@EnableConfigurationProperties(DataSourceProperties.class)
+class ReadReplicaConfig {
+
+    @Bean
+    RecentWriters recentWriters(@Value("${cashcard.datasource.read-your-writes:5s}") Duration window) {
+        return new RecentWriters(window);
+    }
+
+    @Bean
+    ReplicaRoutingDataSource replicaRoutingDataSource(DataSourceProperties primaryProperties, Environment environment,
+            RecentWriters recentWriters, ObjectProvider<MeterRegistry> meterRegistry) {
+        Binder binder = Binder.get(environment);
+        HikariDataSource primary = primaryProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        primary.setPoolName("primary");
+
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (int i = 0; binder.bind("cashcard.datasource.replicas[" + i + "].url", String.class).isBound(); i++) {
+            String prefix = "cashcard.datasource.replicas[" + i + "].";
+            HikariDataSource replica = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .driverClassName(primaryProperties.determineDriverClassName())
+                    .url(environment.getRequiredProperty(prefix + "url"))
+                    .username(environment.getProperty(prefix + "username", primaryProperties.determineUsername()))
+                    .password(environment.getProperty(prefix + "password", primaryProperties.determinePassword()))
+                    .build();
+            binder.bind("spring.datasource.hikari", Bindable.ofInstance(replica));
+            replica.setPoolName("replica-" + i);
+            replicas.add(replica);
+        }
+        /* Boot only instruments the pools it creates itself */
+        meterRegistry.ifAvailable(registry -> {
+            primary.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+            replicas.forEach(replica -> replica.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry)));
+        });
+        return new ReplicaRoutingDataSource(primary, replicas, recentWriters);
+    }
+
+    @Bean
+    @Primary
+    DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.demo;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.context.event.EventListener;
+
+/**
+ * Read-your-writes policy of the read replicas: for a while after one of their
+ * writes committed, a principal's reads go to the primary database.
+ *
+ * The window should cover the replication lag; a zero window sends every
+ * read-only transaction to a replica.
+ */
+class RecentWriters {
+
+    private final long windowNanos;
+    private final Map<String, Long> readFromPrimaryUntil = new ConcurrentHashMap<>();
+
+    RecentWriters(Duration window) {
+        this.windowNanos = window.toNanos();
+    }
+
+    @EventListener
+    void on(CashCardEvent event) {
+        if (windowNanos > 0) {
+            readFromPrimaryUntil.put(event.owner(), System.nanoTime() + windowNanos);
+        }
+    }
+
+    boolean mustReadFromPrimary(String principal) {
+        Long until = readFromPrimaryUntil.get(principal);
+        if (until == null) {
+            return false;
+        }
+        if (until - System.nanoTime() > 0) {
+            return true;
+        }
+        readFromPrimaryUntil.remove(principal, until);
+        return false;
+    }
+}
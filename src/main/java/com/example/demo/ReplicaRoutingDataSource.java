@@ -0,0 +1,75 @@
+package com.example.demo;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * Sends connections of read-only transactions to the replicas (round robin) and
+ * everything else to the primary, unless RecentWriters says the current principal
+ * has to read its own writes from the primary, or the current request was pinned
+ * to the primary (READ_FROM_PRIMARY).
+ *
+ * The decision is taken when a connection is requested, so this has to sit behind
+ * a LazyConnectionDataSourceProxy: the transaction manager asks for a connection
+ * before the read-only flag of the transaction is published.
+ */
+class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    /* Request attribute sending all reads of the request to the primary, e.g. those answered with an ETag */
+    static final String READ_FROM_PRIMARY = ReplicaRoutingDataSource.class.getName() + ".READ_FROM_PRIMARY";
+
+    private static final String PRIMARY = "primary";
+
+    private final HikariDataSource primary;
+    private final List<HikariDataSource> replicas;
+    private final RecentWriters recentWriters;
+    private final AtomicInteger next = new AtomicInteger();
+
+    ReplicaRoutingDataSource(HikariDataSource primary, List<HikariDataSource> replicas, RecentWriters recentWriters) {
+        this.primary = primary;
+        this.replicas = replicas;
+        this.recentWriters = recentWriters;
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (HikariDataSource replica : replicas) {
+            targets.put(replica.getPoolName(), replica);
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARY;
+        }
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        if (request != null && request.getAttribute(READ_FROM_PRIMARY, RequestAttributes.SCOPE_REQUEST) != null) {
+            return PRIMARY;
+        }
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && recentWriters.mustReadFromPrimary(authentication.getName())) {
+            return PRIMARY;
+        }
+        return replicas.get(Math.floorMod(next.getAndIncrement(), replicas.size())).getPoolName();
+    }
+
+    @Override
+    public void close() {
+        replicas.forEach(HikariDataSource::close);
+        primary.close();
+    }
+}
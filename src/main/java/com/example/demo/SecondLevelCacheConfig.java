@@ -0,0 +1,68 @@
+package com.example.demo;
+
+import java.time.Duration;
+import java.util.OptionalLong;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Hibernate's second-level cache (CashCard entities) and query cache (the finders
+ * CashCardRepository marks cacheable), switched on by cashcard.l2-cache.enabled.
+ *
+ * Regions are local Caffeine caches behind JCache, bounded by max-entries and
+ * expiring ttl after they were written. Not the update timestamps region: a cached
+ * query result is only as good as the timestamps of its tables, so those are kept.
+ * Hits, misses and puts of every region are in Hibernate's statistics and published
+ * as hibernate.second.level.cache.* meters tagged with the region.
+ */
+@Configuration
+@ConditionalOnProperty("cashcard.l2-cache.enabled")
+@Profile("!in-memory") /* nothing for Hibernate to cache without JPA */
+class SecondLevelCacheConfig {
+
+    static final String CASH_CARD_REGION = "cashcard";
+
+    @Bean(destroyMethod = "close")
+    CacheManager secondLevelCacheManager(@Value("${cashcard.l2-cache.max-entries:10000}") long maxEntries,
+            @Value("${cashcard.l2-cache.ttl:5m}") Duration ttl) {
+        CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        /* Its own manager (per application context), not the provider's shared default one */
+        CacheManager cacheManager = provider.getCacheManager(provider.getDefaultURI().resolve("cashcard-l2-" + System.identityHashCode(this)),
+                getClass().getClassLoader());
+
+        CaffeineConfiguration<Object, Object> bounded = new CaffeineConfiguration<>();
+        bounded.setMaximumSize(OptionalLong.of(maxEntries));
+        bounded.setExpireAfterWrite(OptionalLong.of(ttl.toNanos()));
+        cacheManager.createCache(CASH_CARD_REGION, bounded);
+        cacheManager.createCache(RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME, bounded);
+        cacheManager.createCache(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME, new CaffeineConfiguration<>());
+        return cacheManager;
+    }
+
+    @Bean
+    HibernatePropertiesCustomizer secondLevelCache(CacheManager secondLevelCacheManager) {
+        return properties -> {
+            properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+            properties.put(AvailableSettings.USE_QUERY_CACHE, true);
+            properties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+            properties.put(ConfigSettings.CACHE_MANAGER, secondLevelCacheManager);
+            /* Every region is created above, a missing one is a mistake */
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+        };
+    }
+}
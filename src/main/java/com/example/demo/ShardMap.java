@@ -0,0 +1,95 @@
+package com.example.demo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Which shard holds each of the CashCardShards.BUCKETS owner buckets.
+ *
+ * A shard's buckets are written as ranges, e.g. "0-255,768-1023"; every bucket
+ * has to belong to exactly one shard.
+ */
+final class ShardMap {
+
+    private final int[] shardOfBucket;
+    private final int shards;
+
+    private ShardMap(int[] shardOfBucket, int shards) {
+        this.shardOfBucket = shardOfBucket;
+        this.shards = shards;
+    }
+
+    /* shards contiguous ranges of (about) the same number of buckets */
+    static ShardMap evenly(int shards) {
+        int[] shardOfBucket = new int[CashCardShards.BUCKETS];
+        for (int bucket = 0; bucket < shardOfBucket.length; bucket++) {
+            shardOfBucket[bucket] = (int) ((long) bucket * shards / shardOfBucket.length);
+        }
+        return new ShardMap(shardOfBucket, shards);
+    }
+
+    /*
+     * The bucket ranges of each shard, in shard order. Throws IllegalArgumentException
+     * when they are malformed, overlap or leave buckets out
+     */
+    static ShardMap of(List<String> bucketRanges) {
+        int[] shardOfBucket = new int[CashCardShards.BUCKETS];
+        Arrays.fill(shardOfBucket, -1);
+        for (int shard = 0; shard < bucketRanges.size(); shard++) {
+            if (bucketRanges.get(shard) == null) {
+                throw new IllegalArgumentException("No buckets given for shard " + shard);
+            }
+            for (String range : bucketRanges.get(shard).split(",")) {
+                String[] bounds = range.trim().split("-");
+                int first;
+                int last;
+                try {
+                    first = Integer.parseInt(bounds[0].trim());
+                    last = bounds.length == 1 ? first : Integer.parseInt(bounds[1].trim());
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Malformed bucket range of shard " + shard + ": " + range, e);
+                }
+                if (bounds.length > 2 || first < 0 || last < first || last >= shardOfBucket.length) {
+                    throw new IllegalArgumentException("Malformed bucket range of shard " + shard + ": " + range);
+                }
+                for (int bucket = first; bucket <= last; bucket++) {
+                    if (shardOfBucket[bucket] != -1) {
+                        throw new IllegalArgumentException("Bucket " + bucket + " belongs to shards " + shardOfBucket[bucket] + " and " + shard);
+                    }
+                    shardOfBucket[bucket] = shard;
+                }
+            }
+        }
+        for (int bucket = 0; bucket < shardOfBucket.length; bucket++) {
+            if (shardOfBucket[bucket] == -1) {
+                throw new IllegalArgumentException("Bucket " + bucket + " belongs to no shard");
+            }
+        }
+        return new ShardMap(shardOfBucket, bucketRanges.size());
+    }
+
+    int shards() {
+        return shards;
+    }
+
+    int shardOf(int bucket) {
+        return shardOfBucket[bucket];
+    }
+
+    /* The buckets of shard in the format of() reads */
+    String bucketRanges(int shard) {
+        List<String> ranges = new ArrayList<>();
+        for (int bucket = 0; bucket < shardOfBucket.length; bucket++) {
+            if (shardOfBucket[bucket] == shard) {
+                int last = bucket;
+                while (last + 1 < shardOfBucket.length && shardOfBucket[last + 1] == shard) {
+                    last++;
+                }
+                ranges.add(bucket == last ? Integer.toString(bucket) : bucket + "-" + last);
+                bucket = last;
+            }
+        }
+        return String.join(",", ranges);
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.demo;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * Sends every connection to the shard of the current unit of work (see
+ * CashCardShards.current), and connections without one, such as those Hibernate
+ * takes for schema management at startup, to the first shard.
+ *
+ * Like ReplicaRoutingDataSource it sits behind a LazyConnectionDataSourceProxy, so
+ * a transaction only picks its shard when it runs its first statement.
+ */
+class ShardRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    private final List<HikariDataSource> shards;
+    private final CashCardShards cashCardShards;
+
+    ShardRoutingDataSource(List<HikariDataSource> shards, CashCardShards cashCardShards) {
+        this.shards = shards;
+        this.cashCardShards = cashCardShards;
+        Map<Object, Object> targets = new HashMap<>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            targets.put(shard, shards.get(shard));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(shards.get(0));
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Integer shard = cashCardShards.current();
+        return shard != null ? shard : 0;
+    }
+
+    @Override
+    public void close() {
+        shards.forEach(HikariDataSource::close);
+    }
+}
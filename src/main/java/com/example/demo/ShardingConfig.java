@@ -0,0 +1,114 @@
+package com.example.demo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.relational.SchemaManager;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+/**
+ * Sharding, switched on by configuring cashcard.datasource.shards[0].url: every
+ * shard is configured by its own url/username/password (defaulting to those of
+ * spring.datasource.*) and optionally its bucket ranges, and the application's
+ * DataSource routes to the shard of the current owner (see ShardRoutingDataSource).
+ *
+ * Not combined with read replicas: spring.datasource.url isn't used in this mode.
+ * Nor with the in-memory profile, which keeps every CashCard in this JVM.
+ */
+@Configuration
+@ConditionalOnProperty("cashcard.datasource.shards[0].url")
+@Profile("!in-memory")
+@EnableConfigurationProperties(DataSourceProperties.class)
+class ShardingConfig {
+
+    @Bean
+    ShardRoutingDataSource shardRoutingDataSource(DataSourceProperties properties, Environment environment,
+            CashCardShards cashCardShards, ObjectProvider<MeterRegistry> meterRegistry) {
+        Binder binder = Binder.get(environment);
+        List<HikariDataSource> shards = new ArrayList<>();
+        for (int i = 0; i < cashCardShards.count(); i++) {
+            String prefix = "cashcard.datasource.shards[" + i + "].";
+            HikariDataSource shard = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .driverClassName(properties.determineDriverClassName())
+                    .url(environment.getRequiredProperty(prefix + "url"))
+                    .username(environment.getProperty(prefix + "username", properties.determineUsername()))
+                    .password(environment.getProperty(prefix + "password", properties.determinePassword()))
+                    .build();
+            binder.bind("spring.datasource.hikari", Bindable.ofInstance(shard));
+            shard.setPoolName("shard-" + i);
+            shards.add(shard);
+        }
+        /* Boot only instruments the pools it creates itself */
+        meterRegistry.ifAvailable(registry -> shards.forEach(shard -> shard.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry))));
+        return new ShardRoutingDataSource(shards, cashCardShards);
+    }
+
+    /* Ids name their bucket and come from the sequence of their shard, see CashCardIdGenerator */
+    @Bean
+    HibernatePropertiesCustomizer bucketedIds(CashCardShards cashCardShards) {
+        return properties -> {
+            properties.put(CashCardIdGenerator.BUCKETED_IDS, true);
+            properties.put(CashCardIdGenerator.SHARDS, cashCardShards);
+        };
+    }
+
+    @Bean
+    @Primary
+    DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+    }
+
+    /*
+     * When Hibernate generates the schema (the default with embedded databases) it only does so on the
+     * first shard, the one of connections without an owner: the others are recreated as soon as the
+     * EntityManagerFactory is up, before anything queries them
+     */
+    @Bean
+    static BeanPostProcessor shardSchemas(ObjectProvider<CashCardShards> cashCardShards) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof EntityManagerFactory entityManagerFactory) {
+                    Object schemaAction = entityManagerFactory.getProperties().get(AvailableSettings.HBM2DDL_AUTO);
+                    if ("create".equals(schemaAction) || "create-drop".equals(schemaAction)) {
+                        CashCardShards shards = cashCardShards.getObject();
+                        for (int shard = 1; shard < shards.count(); shard++) {
+                            shards.onShard(shard, () -> {
+                                SchemaManager schemaManager = entityManagerFactory.unwrap(SessionFactory.class).getSchemaManager();
+                                schemaManager.dropMappedObjects(true);
+                                schemaManager.exportMappedObjects(true);
+                                return null;
+                            });
+                        }
+                    }
+                }
+                return bean;
+            }
+        };
+    }
+}
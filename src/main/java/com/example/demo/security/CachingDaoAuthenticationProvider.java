@@ -0,0 +1,41 @@
+package com.example.demo.security;
+
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.UserDetails;
+
+/**
+ * DaoAuthenticationProvider that skips the BCrypt comparison when the same
+ * credentials were successfully verified recently.
+ *
+ * The user is still loaded on every request, so account status checks
+ * (locked, disabled, expired) and authorities are always current; only the
+ * expensive password hash comparison is served from the CredentialCache.
+ * Failed checks are never cached.
+ */
+class CachingDaoAuthenticationProvider extends DaoAuthenticationProvider {
+
+    private final CredentialCache credentialCache;
+
+    CachingDaoAuthenticationProvider(CredentialCache credentialCache) {
+        this.credentialCache = credentialCache;
+    }
+
+    @Override
+    protected void additionalAuthenticationChecks(UserDetails userDetails,
+            UsernamePasswordAuthenticationToken authentication) throws AuthenticationException {
+        Object credentials = authentication.getCredentials();
+        if (credentials == null) {
+            super.additionalAuthenticationChecks(userDetails, authentication);
+            return;
+        }
+        String presentedPassword = credentials.toString();
+        if (credentialCache.isVerified(userDetails.getUsername(), presentedPassword, userDetails.getPassword())) {
+            return;
+        }
+        /* Throws BadCredentialsException when the password doesn't match */
+        super.additionalAuthenticationChecks(userDetails, authentication);
+        credentialCache.verified(userDetails.getUsername(), presentedPassword, userDetails.getPassword());
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.demo.security;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Bounded, TTL-expiring memory of username/password pairs that already passed a
+ * BCrypt verification.
+ *
+ * Entries are keyed by an HMAC-SHA256 of username and password under a key that
+ * is generated at startup and never leaves the process, so the raw password is
+ * never stored. Each entry also remembers the encoded password it was verified
+ * against: as soon as the user's stored password changes the entry no longer
+ * matches and is dropped.
+ */
+class CredentialCache {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final Map<ByteBuffer, Entry> entries = new ConcurrentHashMap<>();
+    private final SecretKeySpec key;
+    private final ThreadLocal<Mac> macs;
+    private final int maxEntries;
+    private final long ttlNanos;
+
+    private record Entry(String encodedPassword, long expiresAt) {
+    }
+
+    CredentialCache(int maxEntries, Duration ttl) {
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        this.key = new SecretKeySpec(secret, ALGORITHM);
+        this.macs = ThreadLocal.withInitial(this::newMac);
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    /*
+     * True when this exact username/password was verified against encodedPassword
+     * less than ttl ago
+     */
+    boolean isVerified(String username, String rawPassword, String encodedPassword) {
+        ByteBuffer key = keyOf(username, rawPassword);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return false;
+        }
+        if (entry.expiresAt() - System.nanoTime() <= 0 || !entry.encodedPassword().equals(encodedPassword)) {
+            entries.remove(key, entry);
+            return false;
+        }
+        return true;
+    }
+
+    /* Only ever called after a successful password check */
+    void verified(String username, String rawPassword, String encodedPassword) {
+        if (entries.size() >= maxEntries) {
+            makeRoom();
+        }
+        entries.put(keyOf(username, rawPassword), new Entry(encodedPassword, System.nanoTime() + ttlNanos));
+    }
+
+    /*
+     * Drops expired entries first and, if the cache is still full, an arbitrary one.
+     */
+    private void makeRoom() {
+        long now = System.nanoTime();
+        entries.values().removeIf(entry -> entry.expiresAt() - now <= 0);
+        Iterator<ByteBuffer> keys = entries.keySet().iterator();
+        while (entries.size() >= maxEntries && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    private ByteBuffer keyOf(String username, String rawPassword) {
+        Mac mac = macs.get();
+        mac.update(username.getBytes(StandardCharsets.UTF_8));
+        mac.update((byte) 0);
+        return ByteBuffer.wrap(mac.doFinal(rawPassword.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.demo.security;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Admission control of /cashcards, placed after authorization so it only ever
+ * sees requests that are allowed to reach the controller.
+ *
+ * Every principal has a read (GET, HEAD and the multi-get POST /cashcards/lookup)
+ * and a write budget, two TokenBuckets: a request over budget is answered 429
+ * with Retry-After. Admitted requests then
+ * need one of maxConcurrent in-flight permits, so the load is shed with 503 before
+ * requests pile up in front of the connection pool. Neither check blocks.
+ *
+ * Streaming (async) responses hand their permit back when the request thread
+ * returns, not when the stream completes.
+ */
+class RateLimitFilter extends OncePerRequestFilter {
+
+    record Budget(int capacity, double perSecond) {
+    }
+
+    private record Buckets(TokenBucket read, TokenBucket write) {
+    }
+
+    private final Budget read;
+    private final Budget write;
+    private final Semaphore inFlight;
+    private final Map<String, Buckets> buckets = new ConcurrentHashMap<>();
+
+    RateLimitFilter(Budget read, Budget write, int maxConcurrent) {
+        this.read = read;
+        this.write = write;
+        this.inFlight = new Semaphore(maxConcurrent);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith(request.getContextPath() + "/cashcards");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || authentication instanceof AnonymousAuthenticationToken) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        Buckets principal = buckets.computeIfAbsent(authentication.getName(),
+                name -> new Buckets(new TokenBucket(read.capacity(), read.perSecond()), new TokenBucket(write.capacity(), write.perSecond())));
+        long waitNanos = (isRead(request) ? principal.read() : principal.write()).tryAcquire(System.nanoTime());
+        if (waitNanos > 0) {
+            reject(response, HttpStatus.TOO_MANY_REQUESTS, waitNanos);
+            return;
+        }
+
+        if (!inFlight.tryAcquire()) {
+            reject(response, HttpStatus.SERVICE_UNAVAILABLE, TimeUnit.SECONDS.toNanos(1));
+            return;
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    /* POST /cashcards/lookup is a multi-get with its ids in the body */
+    private static boolean isRead(HttpServletRequest request) {
+        String method = request.getMethod();
+        return HttpMethod.GET.matches(method) || HttpMethod.HEAD.matches(method)
+                || (HttpMethod.POST.matches(method) && request.getRequestURI().equals(request.getContextPath() + "/cashcards/lookup"));
+    }
+
+    private static void reject(HttpServletResponse response, HttpStatus status, long retryAfterNanos) {
+        long seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(retryAfterNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(seconds));
+    }
+}
@@ -1,7 +1,18 @@
 package com.example.demo.security;
 
+import java.time.Duration;
+
+import io.micrometer.observation.ObservationRegistry;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.ObservationAuthenticationManager;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.core.userdetails.User;
@@ -11,6 +22,7 @@ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.AuthorizationFilter;
 
 @Configuration
 /*
@@ -27,10 +39,28 @@ class SecurityConfig {
    * Also, RBAC(Role Based Access Control) it's enabled in order to get access to CashCards information
    * Also, do not require CSRF security.
    */
-  SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+  SecurityFilterChain filterChain(HttpSecurity http, AuthenticationManager authenticationManager,
+      @Value("${cashcard.rate-limit.enabled:true}") boolean rateLimitEnabled,
+      @Value("${cashcard.rate-limit.read.capacity:100}") int readCapacity,
+      @Value("${cashcard.rate-limit.read.per-second:50}") double readPerSecond,
+      @Value("${cashcard.rate-limit.write.capacity:20}") int writeCapacity,
+      @Value("${cashcard.rate-limit.write.per-second:10}") double writePerSecond,
+      @Value("${cashcard.rate-limit.max-concurrent-requests:50}") int maxConcurrentRequests) throws Exception {
+    if (rateLimitEnabled) {
+      /* Per-principal read/write budgets and a global in-flight limit, checked once the request is authorized */
+      http.addFilterAfter(new RateLimitFilter(new RateLimitFilter.Budget(readCapacity, readPerSecond),
+        new RateLimitFilter.Budget(writeCapacity, writePerSecond), maxConcurrentRequests), AuthorizationFilter.class);
+    }
     http
+      .authenticationManager(authenticationManager)
       .authorizeHttpRequests(request ->
-        request.requestMatchers("/cashcards/**").hasRole("CARD-OWNER"))/*enable RBAC: Replaced the .authenticated() call with the hasRole(...) call.*/
+        request.requestMatchers("/cashcards/**").hasRole("CARD-OWNER")/*enable RBAC: Replaced the .authenticated() call with the hasRole(...) call.*/
+          .requestMatchers(EndpointRequest.to("health")).permitAll()
+          /*
+           * the other endpoints listed in management.endpoints.web.exposure.include (metrics, prometheus, cache stats)
+           * tell about everybody's traffic, only monitoring gets to see them
+           */
+          .requestMatchers(EndpointRequest.toAnyEndpoint()).hasRole("ACTUATOR"))
       .csrf(csrf -> csrf.disable())
       .httpBasic(Customizer.withDefaults());
     /*
@@ -66,8 +96,37 @@ class SecurityConfig {
       .roles("NON-OWNER")
       .build();
 
-    return new InMemoryUserDetailsManager(user, user2, user3);
+      UserDetails monitoring = users
+      .username("Monitor")
+      .password(encoder.encode("monitor123"))
+      .roles("ACTUATOR")
+      .build();
+
+    return new InMemoryUserDetailsManager(user, user2, user3, monitoring);
   }
+  @Bean
+  /*
+   * HTTP Basic sends the credentials on every request, and checking them with BCrypt
+   * costs far more CPU than serving the request itself. When enabled, successful checks
+   * are remembered for a while (see CredentialCache), bad passwords always hit BCrypt.
+   */
+  AuthenticationManager authenticationManager(UserDetailsService userDetailsService, PasswordEncoder encoder,
+      ObjectProvider<ObservationRegistry> observationRegistry,
+      @Value("${cashcard.security.credential-cache.enabled:true}") boolean cacheEnabled,
+      @Value("${cashcard.security.credential-cache.max-entries:10000}") int maxEntries,
+      @Value("${cashcard.security.credential-cache.ttl:5m}") Duration ttl) {
+    DaoAuthenticationProvider provider = cacheEnabled
+      ? new CachingDaoAuthenticationProvider(new CredentialCache(maxEntries, ttl))
+      : new DaoAuthenticationProvider();
+    provider.setUserDetailsService(userDetailsService);
+    provider.setPasswordEncoder(encoder);
+    /* timed as spring.security.authentications when observations are available */
+    ObservationRegistry registry = observationRegistry.getIfAvailable(() -> ObservationRegistry.NOOP);
+    return registry.isNoop()
+      ? new ProviderManager(provider)
+      : new ObservationAuthenticationManager(registry, new ProviderManager(provider));
+  }
+
   /*Password encoder */
   @Bean
   PasswordEncoder passwordEncoder() {
@@ -0,0 +1,42 @@
+package com.example.demo.security;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket of capacity tokens, refilled at tokensPerSecond.
+ *
+ * The whole state is one "theoretical arrival time" (the GCRA form of a token
+ * bucket): the bucket is full when it's not ahead of now, every token taken moves
+ * it 1/tokensPerSecond further, and a token is refused when that would put it more
+ * than capacity tokens ahead of now. Taking a token is a single CAS.
+ */
+final class TokenBucket {
+
+    private final long nanosPerToken;
+    private final long capacityNanos;
+    private final AtomicLong arrival;
+
+    TokenBucket(int capacity, double tokensPerSecond) {
+        this.nanosPerToken = (long) (1_000_000_000L / tokensPerSecond);
+        this.capacityNanos = capacity * nanosPerToken;
+        this.arrival = new AtomicLong(System.nanoTime());
+    }
+
+    /*
+     * Takes a token at time now (System.nanoTime()) and returns 0, or returns how
+     * many nanoseconds to wait for the next one without taking anything
+     */
+    long tryAcquire(long now) {
+        while (true) {
+            long current = arrival.get();
+            long next = (current - now < 0 ? now : current) + nanosPerToken;
+            long ahead = next - now;
+            if (ahead > capacityNanos) {
+                return ahead - capacityNanos;
+            }
+            if (arrival.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+}
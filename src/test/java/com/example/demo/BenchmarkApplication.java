@@ -0,0 +1,103 @@
+package com.example.demo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Shared plumbing for the JMH suites: boots a CashcardApplication inside the
+ * benchmark JVM and seeds the H2 database with a given number of CashCards.
+ * Benchmarks are not picked up by Surefire, run them with the benchmark profile.
+ */
+final class BenchmarkApplication {
+
+    static final String OWNER = "LeudiX1";
+    static final String PASSWORD = "leo123";
+
+    private final ConfigurableApplicationContext context;
+    private final List<Long> ids = new ArrayList<>();
+
+    private BenchmarkApplication(ConfigurableApplicationContext context) {
+        this.context = context;
+    }
+
+    /*
+     * Starts the application on a random port (or without a web server) with the
+     * given extra properties, e.g. "cashcard.some.flag=false"
+     */
+    static BenchmarkApplication start(WebApplicationType type, String... properties) {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(CashcardApplication.class)
+                .web(type)
+                .properties("logging.level.root=WARN", "spring.main.banner-mode=off")
+                .run(arguments(properties));
+        return new BenchmarkApplication(context);
+    }
+
+    /*
+     * Passed as command line arguments so they win over application.properties. Benchmarks drive
+     * one user far past its rate limit, it's off unless they turn it on again
+     */
+    private static String[] arguments(String... properties) {
+        String[] arguments = new String[properties.length + 2];
+        arguments[0] = "--server.port=0";
+        arguments[1] = "--cashcard.rate-limit.enabled=false";
+        for (int i = 0; i < properties.length; i++) {
+            arguments[i + 2] = "--" + properties[i];
+        }
+        return arguments;
+    }
+
+    /* Inserts count CashCards owned by owner and remembers their ids */
+    BenchmarkApplication seed(String owner, int count) {
+        CashCardRepository repository = repository();
+        List<CashCard> batch = new ArrayList<>(1_000);
+        for (int i = 0; i < count; i++) {
+            batch.add(new CashCard(null, ThreadLocalRandom.current().nextInt(1, 100_000) / 100.0, owner));
+            if (batch.size() == 1_000 || i == count - 1) {
+                repository.saveAll(batch).forEach(saved -> ids.add(saved.getId()));
+                batch.clear();
+            }
+        }
+        return this;
+    }
+
+    CashCardRepository repository() {
+        return context.getBean(CashCardRepository.class);
+    }
+
+    <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    /* A random id among the seeded CashCards */
+    long randomId() {
+        return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+    }
+
+    int port() {
+        return ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+    }
+
+    /* RestTemplate rooted at the running server, authenticated as the given user */
+    RestTemplate client(String username, String password) {
+        return new RestTemplateBuilder()
+                .rootUri("http://localhost:" + port())
+                .basicAuthentication(username, password)
+                .build();
+    }
+
+    RestTemplate client() {
+        return client(OWNER, PASSWORD);
+    }
+
+    void close() {
+        context.close();
+    }
+}
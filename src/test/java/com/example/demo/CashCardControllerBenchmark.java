@@ -0,0 +1,91 @@
+package com.example.demo;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * End to end throughput of every CashCardController endpoint, going through
+ * Tomcat, Spring Security (HTTP Basic) and JPA/H2.
+ *
+ * Data size is a JMH parameter (-p cards=...) and concurrency is the JMH thread
+ * count (-t ...), e.g. -Djmh.args="CashCardControllerBenchmark -p cards=100000 -t 16"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CashCardControllerBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class App {
+
+        @Param({ "100", "10000" })
+        public int cards;
+
+        BenchmarkApplication application;
+        RestTemplate client;
+
+        @Setup(Level.Trial)
+        public void start() {
+            application = BenchmarkApplication.start(WebApplicationType.SERVLET)
+                    .seed(BenchmarkApplication.OWNER, cards);
+            client = application.client();
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() {
+            application.close();
+        }
+    }
+
+    /* A freshly created CashCard for every deleteCashCard invocation */
+    @State(Scope.Thread)
+    public static class Victim {
+
+        long id;
+
+        @Setup(Level.Invocation)
+        public void create(App app) {
+            id = app.application.repository().save(new CashCard(null, 1.0, BenchmarkApplication.OWNER)).getId();
+        }
+    }
+
+    @Benchmark
+    public String findById(App app) {
+        return app.client.getForObject("/cashcards/{id}", String.class, app.application.randomId());
+    }
+
+    @Benchmark
+    public String getAllCashCards(App app) {
+        return app.client.getForObject("/cashcards?page=0&size=20", String.class);
+    }
+
+    @Benchmark
+    public URI createCashCard(App app) {
+        return app.client.postForLocation("/cashcards", new CashCard(null, 10.0, null));
+    }
+
+    @Benchmark
+    public Object updateCashCard(App app) {
+        return app.client.exchange("/cashcards/{id}", HttpMethod.PUT, new HttpEntity<>(new CashCard(null, 42.0, null)),
+                Void.class, app.application.randomId());
+    }
+
+    @Benchmark
+    public Object deleteCashCard(App app, Victim victim) {
+        return app.client.exchange("/cashcards/{id}", HttpMethod.DELETE, null, Void.class, victim.id);
+    }
+}
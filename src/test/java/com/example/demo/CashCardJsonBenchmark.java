@@ -0,0 +1,61 @@
+package com.example.demo;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Jackson (de)serialization cost of the CashCard data contract, for a single
+ * card and for a page of cards.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class CashCardJsonBenchmark {
+
+    @Param({ "20", "1000" })
+    public int pageSize;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private ObjectWriter writer;
+    private CashCard cashCard;
+    private CashCard[] page;
+    private String json;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        writer = mapper.writer();
+        cashCard = new CashCard(99L, 123.45, "LeudiX1");
+        page = new CashCard[pageSize];
+        for (int i = 0; i < pageSize; i++) {
+            page[i] = new CashCard((long) i, i + 0.5, "LeudiX1");
+        }
+        json = writer.writeValueAsString(cashCard);
+    }
+
+    @Benchmark
+    public byte[] serializeCashCard() throws JsonProcessingException {
+        return writer.writeValueAsBytes(cashCard);
+    }
+
+    @Benchmark
+    public byte[] serializePage() throws JsonProcessingException {
+        return writer.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public CashCard deserializeCashCard() throws JsonProcessingException {
+        return mapper.readValue(json, CashCard.class);
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.demo;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.boot.WebApplicationType;
+
+/**
+ * Multi-user load generator for CashCardController: drives mixed workloads as
+ * the card owners of SecurityConfig (LeudiX1 and Sarah) and reports throughput
+ * and p50/p95/p99/p99.9 latency per endpoint.
+ *
+ * Workloads, each run for the same duration after a short warm-up:
+ * - read-heavy: 90% GET /cashcards/{id}, 10% PUT /cashcards/{id}
+ * - write-heavy: 20% GET /cashcards/{id}, 50% PUT /cashcards/{id}, 30% POST /cashcards
+ * - paging: 80% GET /cashcards?page=..&size=20 at random pages, 20% first cursor slice (after=)
+ *
+ * Against an application started in-process with its rate limits turned off by
+ * default, or against a running one given by the target property (start that one
+ * with --cashcard.rate-limit.enabled=false). Either way every owner is first
+ * seeded with cards CashCards through POST /cashcards/batch. The full latency
+ * distribution of every endpoint is written in HdrHistogram's percentile format
+ * to target/load/<workload>/<endpoint>.hgrm (values in milliseconds).
+ * Run with:
+ * ./mvnw test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.demo.CashCardLoadGenerator
+ * Optional system properties: target (e.g. http://localhost:8080), workloads (default read-heavy,write-heavy,paging),
+ * clients (default 64), seconds (default 30), cards (default 10000 per owner).
+ */
+public class CashCardLoadGenerator {
+
+    private static final Pattern ID = Pattern.compile("/cashcards/(\\d+)");
+    private static final int PAGE_SIZE = 20;
+
+    /* A card owner of SecurityConfig and the ids of its seeded CashCards */
+    private record Owner(String authorization, List<Long> ids) {
+
+        long randomId() {
+            return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> workloads = List.of(System.getProperty("workloads", "read-heavy,write-heavy,paging").split(","));
+        int clients = Integer.getInteger("clients", 64);
+        Duration duration = Duration.ofSeconds(Long.getLong("seconds", 30));
+        int cards = Integer.getInteger("cards", 10_000);
+
+        BenchmarkApplication application = null;
+        String target = System.getProperty("target");
+        if (target == null) {
+            application = BenchmarkApplication.start(WebApplicationType.SERVLET);
+            target = "http://localhost:" + application.port();
+        }
+        try {
+            HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(30)).build();
+            List<Owner> owners = List.of(
+                    seed(client, target, "LeudiX1", "leo123", cards),
+                    seed(client, target, "Sarah", "sara123", cards));
+
+            LoadDriver driver = new LoadDriver(client);
+            List<LoadDriver.Result> results = new ArrayList<>();
+            for (String workload : workloads) {
+                Supplier<LoadDriver.Request> requests = workload(workload.trim(), target, owners, cards);
+                driver.runMix("warm-up", clients, Duration.ofSeconds(5), requests);
+                results.add(driver.runMix(workload.trim(), clients, duration, requests));
+            }
+            report(results);
+        } finally {
+            if (application != null) {
+                application.close();
+            }
+        }
+    }
+
+    private static Supplier<LoadDriver.Request> workload(String workload, String target, List<Owner> owners, int cards) {
+        int pages = Math.max(1, cards / PAGE_SIZE);
+        return () -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            Owner owner = owners.get(random.nextInt(owners.size()));
+            int dice = random.nextInt(100);
+            return switch (workload) {
+            case "read-heavy" -> dice < 90 ? findById(target, owner) : update(target, owner);
+            case "write-heavy" -> dice < 20 ? findById(target, owner) : dice < 70 ? update(target, owner) : create(target, owner);
+            case "paging" -> dice < 80
+                    ? get("GET /cashcards?page", target + "/cashcards?page=" + random.nextInt(pages) + "&size=" + PAGE_SIZE, owner)
+                    : get("GET /cashcards?after", target + "/cashcards?after=&size=" + PAGE_SIZE, owner);
+            default -> throw new IllegalArgumentException("Unknown workload " + workload);
+            };
+        };
+    }
+
+    private static LoadDriver.Request findById(String target, Owner owner) {
+        return get("GET /cashcards/{id}", target + "/cashcards/" + owner.randomId(), owner);
+    }
+
+    private static LoadDriver.Request get(String endpoint, String uri, Owner owner) {
+        return new LoadDriver.Request(endpoint, request(uri, owner).GET().build());
+    }
+
+    private static LoadDriver.Request update(String target, Owner owner) {
+        return new LoadDriver.Request("PUT /cashcards/{id}", request(target + "/cashcards/" + owner.randomId(), owner)
+                .PUT(HttpRequest.BodyPublishers.ofString("{\"amount\": " + amount() + "}"))
+                .build());
+    }
+
+    private static LoadDriver.Request create(String target, Owner owner) {
+        return new LoadDriver.Request("POST /cashcards", request(target + "/cashcards", owner)
+                .POST(HttpRequest.BodyPublishers.ofString("{\"amount\": " + amount() + "}"))
+                .build());
+    }
+
+    private static HttpRequest.Builder request(String uri, Owner owner) {
+        return HttpRequest.newBuilder(URI.create(uri))
+                .header("Authorization", owner.authorization())
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(60));
+    }
+
+    private static double amount() {
+        return ThreadLocalRandom.current().nextInt(1, 100_000) / 100.0;
+    }
+
+    /* Creates cards CashCards for username, 1000 per batch, and collects their ids from the returned locations */
+    private static Owner seed(HttpClient client, String target, String username, String password, int cards)
+            throws IOException, InterruptedException {
+        String authorization = "Basic " + Base64.getEncoder().encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+        List<Long> ids = new ArrayList<>(cards);
+        for (int seeded = 0; seeded < cards; seeded += 1_000) {
+            StringBuilder batch = new StringBuilder("[");
+            for (int i = seeded; i < Math.min(cards, seeded + 1_000); i++) {
+                batch.append(i == seeded ? "" : ",").append("{\"amount\": ").append(amount()).append('}');
+            }
+            HttpRequest create = HttpRequest.newBuilder(URI.create(target + "/cashcards/batch"))
+                    .header("Authorization", authorization)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(batch.append(']').toString()))
+                    .build();
+            HttpResponse<String> response = client.send(create, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 201) {
+                throw new IllegalStateException("Seeding " + username + " failed with " + response.statusCode());
+            }
+            Matcher locations = ID.matcher(response.body());
+            while (locations.find()) {
+                ids.add(Long.parseLong(locations.group(1)));
+            }
+        }
+        return new Owner(authorization, ids);
+    }
+
+    private static void report(List<LoadDriver.Result> results) throws IOException {
+        System.out.printf("%n%-12s %-24s %10s %12s %8s %9s %9s %9s %9s%n", "workload", "endpoint", "requests", "requests/s", "errors",
+                "p50 ms", "p95 ms", "p99 ms", "p99.9 ms");
+        for (LoadDriver.Result result : results) {
+            double seconds = result.elapsed().toNanos() / 1_000_000_000.0;
+            for (Map.Entry<String, LoadDriver.Endpoint> entry : result.endpoints().entrySet()) {
+                LoadDriver.Endpoint endpoint = entry.getValue();
+                System.out.printf("%-12s %-24s %10d %12.1f %8d %9.2f %9.2f %9.2f %9.2f%n", result.name(), entry.getKey(),
+                        endpoint.requests(), endpoint.requests() / seconds, endpoint.errors(),
+                        millis(endpoint, 50), millis(endpoint, 95), millis(endpoint, 99), millis(endpoint, 99.9));
+                write(result.name(), entry.getKey(), endpoint);
+            }
+            System.out.printf("%-12s %-24s %10d %12.1f %8d %9.2f %9.2f %9.2f %9.2f%n", result.name(), "all", result.requests(),
+                    result.throughput(), result.errors(), result.percentileMillis(50), result.percentileMillis(95),
+                    result.percentileMillis(99), result.percentileMillis(99.9));
+        }
+        System.out.println("\nLatency distributions: " + Path.of("target", "load").toAbsolutePath());
+    }
+
+    private static double millis(LoadDriver.Endpoint endpoint, double percentile) {
+        return endpoint.latencies().getValueAtPercentile(percentile) / 1_000.0;
+    }
+
+    private static void write(String workload, String endpoint, LoadDriver.Endpoint latencies) throws IOException {
+        Path directory = Files.createDirectories(Path.of("target", "load", workload));
+        String file = endpoint.replaceAll("[^A-Za-z0-9]+", "_").replaceAll("^_|_$", "") + ".hgrm";
+        try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve(file)), false, StandardCharsets.UTF_8)) {
+            latencies.latencies().outputPercentileDistribution(out, 1_000.0);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.demo;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+/**
+ * Latency of the derived queries on CashCardRepository against the embedded H2
+ * database, without the web layer in between.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class CashCardRepositoryBenchmark {
+
+    @Param({ "100", "10000" })
+    public int cards;
+
+    private BenchmarkApplication application;
+    private CashCardRepository repository;
+    private final Pageable firstPage = PageRequest.of(0, 20, Sort.by(Sort.Direction.ASC, "amount"));
+
+    @Setup(Level.Trial)
+    public void start() {
+        application = BenchmarkApplication.start(WebApplicationType.SERVLET)
+                .seed(BenchmarkApplication.OWNER, cards);
+        repository = application.repository();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        application.close();
+    }
+
+    @Benchmark
+    public Object findByIdAndOwner() {
+        return repository.findByIdAndOwner(application.randomId(), BenchmarkApplication.OWNER);
+    }
+
+    @Benchmark
+    public Object findByOwner() {
+        return repository.findByOwner(BenchmarkApplication.OWNER, firstPage).getContent();
+    }
+
+    @Benchmark
+    public boolean existsByIdAndOwner() {
+        return repository.existsByIdAndOwner(application.randomId(), BenchmarkApplication.OWNER);
+    }
+}
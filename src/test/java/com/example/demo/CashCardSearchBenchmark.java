@@ -0,0 +1,93 @@
+package com.example.demo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Amount-range search of one owner's CashCards: the indexed range query behind
+ * GET /cashcards/search against filtering every CashCard of the owner, which is
+ * what clients had to do through the paged list endpoint.
+ *
+ * Seeded amounts are uniform between 0.01 and 999.99; every invocation searches
+ * a random range of width 0.10, so about cards / 10,000 matches (100 at 1M rows),
+ * read in slices of 100. The range search should cost about the same at both
+ * sizes while the filter grows with cards.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class CashCardSearchBenchmark {
+
+    private static final double WIDTH = 0.10;
+
+    @Param({ "10000", "1000000" })
+    public int cards;
+
+    private BenchmarkApplication application;
+    private CashCardRepository repository;
+    private TransactionTemplate readOnlyTransaction;
+    private final Pageable slice = PageRequest.ofSize(100);
+
+    @Setup(Level.Trial)
+    public void start() {
+        application = BenchmarkApplication.start(WebApplicationType.SERVLET)
+                .seed(BenchmarkApplication.OWNER, cards);
+        repository = application.repository();
+        readOnlyTransaction = new TransactionTemplate(application.bean(PlatformTransactionManager.class));
+        readOnlyTransaction.setReadOnly(true);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        application.close();
+    }
+
+    @Benchmark
+    public List<CashCardView> rangeSearch() {
+        double from = lowerBound();
+        List<CashCardView> found = new ArrayList<>();
+        Slice<CashCardView> page = repository.findAscendingByOwnerAndAmountBetween(BenchmarkApplication.OWNER, from, from + WIDTH,
+                Long.MIN_VALUE, slice);
+        found.addAll(page.getContent());
+        while (page.hasNext()) {
+            CashCardView last = found.get(found.size() - 1);
+            page = repository.findAscendingByOwnerAndAmountBetween(BenchmarkApplication.OWNER, last.amount(), from + WIDTH, last.id(), slice);
+            found.addAll(page.getContent());
+        }
+        return found;
+    }
+
+    @Benchmark
+    public List<CashCardView> scanAndFilter() {
+        double from = lowerBound();
+        return readOnlyTransaction.execute(status -> {
+            try (Stream<CashCardView> all = repository.streamByOwner(BenchmarkApplication.OWNER)) {
+                return all.filter(cashCard -> cashCard.amount() >= from && cashCard.amount() <= from + WIDTH).toList();
+            }
+        });
+    }
+
+    private static double lowerBound() {
+        return ThreadLocalRandom.current().nextInt(1, 99_990) / 100.0;
+    }
+}
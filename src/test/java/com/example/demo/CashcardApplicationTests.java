@@ -1,17 +1,30 @@
 package com.example.demo;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
 
 import com.jayway.jsonpath.DocumentContext;
 import com.jayway.jsonpath.JsonPath;
+import java.math.BigDecimal;
 import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 import net.minidev.json.JSONArray;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -27,6 +40,7 @@ import org.springframework.test.annotation.DirtiesContext;
  * perform requests to it
  */
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureObservability /* metrics export (the Prometheus endpoint) is disabled in tests otherwise */
 class CashcardApplicationTests {
 
   @Autowired
@@ -152,6 +166,192 @@ class CashcardApplicationTests {
     assertThat(owner).isEqualTo("LeudiX1");
   }
 
+  /*
+   * Many CashCards can be created at once, each one owned by the authenticated Principal
+   */
+  @Test
+  @DirtiesContext
+  void shouldCreateABatchOfCashCards() {
+    CashCard[] batch = {
+      new CashCard(null, 10.0, null),
+      new CashCard(null, 20.0, "someone-else"),
+      new CashCard(null, 30.0, null),
+    };
+
+    ResponseEntity<URI[]> response = restTemplate
+      .withBasicAuth("Sarah", "sara123")
+      .postForEntity("/cashcards/batch", batch, URI[].class);
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+    assertThat(response.getBody()).hasSize(3);
+
+    for (int i = 0; i < batch.length; i++) {
+      ResponseEntity<String> getResponse = restTemplate
+        .withBasicAuth("Sarah", "sara123")
+        .getForEntity(response.getBody()[i], String.class);
+      assertThat(getResponse.getStatusCode()).isEqualTo(HttpStatus.OK);
+
+      DocumentContext dContext = JsonPath.parse(getResponse.getBody());
+      Double amount = dContext.read("$.amount");
+      String owner = dContext.read("$.owner");
+      assertThat(amount).isEqualTo(batch[i].getAmount());
+      assertThat(owner).isEqualTo("Sarah");
+    }
+  }
+
+  @Test
+  void shouldRejectAnEmptyBatch() {
+    ResponseEntity<Void> response = restTemplate
+      .withBasicAuth("Sarah", "sara123")
+      .postForEntity("/cashcards/batch", new CashCard[0], Void.class);
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+  }
+
+  /*
+   * Every CashCard of the owner is exported, one JSON object per line
+   */
+  @Test
+  @DirtiesContext
+  void shouldExportAllCashCardsAsNdjson() {
+    restTemplate
+      .withBasicAuth("Sarah", "sara123")
+      .postForEntity("/cashcards/batch", new CashCard[] { new CashCard(null, 1.0, null), new CashCard(null, 2.0, null) }, Void.class);
+
+    ResponseEntity<String> response = restTemplate
+      .withBasicAuth("Sarah", "sara123")
+      .getForEntity("/cashcards/export", String.class);
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(response.getHeaders().getContentType()).hasToString("application/x-ndjson");
+
+    JSONArray listedIds = JsonPath.parse(restTemplate
+      .withBasicAuth("Sarah", "sara123")
+      .getForEntity("/cashcards?size=1000", String.class)
+      .getBody()).read("$[*].id");
+
+    String[] lines = response.getBody().split("\n");
+    List<Object> exportedIds = new ArrayList<>();
+    for (String line : lines) {
+      DocumentContext cashCard = JsonPath.parse(line);
+      String owner = cashCard.read("$.owner");
+      assertThat(owner).isEqualTo("Sarah");
+      exportedIds.add(cashCard.read("$.id"));
+    }
+    assertThat(exportedIds).containsExactlyInAnyOrderElementsOf(listedIds);
+
+    ResponseEntity<String> csvResponse = restTemplate
+      .withBasicAuth("Sarah", "sara123")
+      .getForEntity("/cashcards/export?format=csv", String.class);
+    assertThat(csvResponse.getBody().split("\n")).hasSize(lines.length + 1).startsWith("id,amount,owner");
+  }
+
+  /*
+   * The summary follows creates, updates and deletes and always agrees with the listed CashCards
+   */
+  @Test
+  @DirtiesContext
+  void shouldSummarizeTheBalanceOfTheOwner() {
+    ResponseEntity<URI[]> created = restTemplate
+      .withBasicAuth("Sarah", "sara123")
+      .postForEntity("/cashcards/batch", new CashCard[] { new CashCard(null, 0.1, null), new CashCard(null, 999.99, null) }, URI[].class);
+    assertSummaryMatchesListing("Sarah", "sara123");
+
+    restTemplate
+      .withBasicAuth("Sarah", "sara123")
+      .exchange(created.getBody()[0], HttpMethod.PUT, new HttpEntity<>(new CashCard(null, 0.2, null)), Void.class);
+    assertSummaryMatchesListing("Sarah", "sara123");
+
+    restTemplate
+      .withBasicAuth("Sarah", "sara123")
+      .exchange(created.getBody()[1], HttpMethod.DELETE, null, Void.class);
+    assertSummaryMatchesListing("Sarah", "sara123");
+  }
+
+  /*
+   * Amounts far beyond cents of a long still add up in the summary, and amounts that aren't numbers are rejected
+   */
+  @Test
+  @DirtiesContext
+  void shouldSummarizeHugeAmountsAndRejectInfiniteOnes() {
+    URI huge = restTemplate
+      .withBasicAuth("Sarah", "sara123")
+      .postForLocation("/cashcards", new CashCard(null, 1.5e15, null));
+    assertThat(huge).isNotNull();
+    assertSummaryMatchesListing("Sarah", "sara123");
+    ResponseEntity<Void> update = restTemplate
+      .withBasicAuth("Sarah", "sara123")
+      .exchange(huge, HttpMethod.PUT, new HttpEntity<>(new CashCard(null, -2.5e20, null)), Void.class);
+    assertThat(update.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+    assertSummaryMatchesListing("Sarah", "sara123");
+
+    HttpHeaders json = new HttpHeaders();
+    json.set(HttpHeaders.CONTENT_TYPE, "application/json");
+    ResponseEntity<Void> infinite = restTemplate
+      .withBasicAuth("Sarah", "sara123")
+      .postForEntity("/cashcards", new HttpEntity<>("{\"amount\": 1e400}", json), Void.class);
+    assertThat(infinite.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    assertSummaryMatchesListing("Sarah", "sara123");
+  }
+
+  /*
+   * The events of a create and of the delete right after it may arrive the other way round, and writers of
+   * one owner add to the total concurrently: the summary still ends up right
+   */
+  @Test
+  void shouldSummarizeEventsInAnyOrderAndConcurrently() throws Exception {
+    OwnerBalanceSummaries summaries = new OwnerBalanceSummaries(null, null);
+    summaries.on(CashCardEvent.deleted("Sarah", 1, 5.0));
+    summaries.on(CashCardEvent.updated("Sarah", 2, 7.0, 8.0));
+    assertThat(summaries.summary("Sarah").count()).isEqualTo(-1);
+    summaries.on(CashCardEvent.created(new CashCard(1L, 5.0, "Sarah")));
+    summaries.on(CashCardEvent.created(new CashCard(2L, 7.0, "Sarah")));
+    CashCardSummary summary = summaries.summary("Sarah");
+    assertThat(summary.count()).isEqualTo(1);
+    assertThat(summary.total()).isEqualTo(8.0);
+    assertThat(summary.min()).isEqualTo(8.0);
+    assertThat(summary.max()).isEqualTo(8.0);
+
+    ExecutorService writers = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<?>> done = new ArrayList<>();
+      for (int writer = 0; writer < 8; writer++) {
+        done.add(writers.submit(() -> {
+          for (int i = 0; i < 10_000; i++) {
+            summaries.on(CashCardEvent.created(new CashCard((long) i, 0.01, "LeudiX1")));
+          }
+        }));
+      }
+      for (Future<?> writer : done) {
+        writer.get();
+      }
+    } finally {
+      writers.shutdown();
+    }
+    assertThat(summaries.summary("LeudiX1").count()).isEqualTo(80_000);
+    assertThat(summaries.summary("LeudiX1").total()).isEqualTo(800.0);
+  }
+
+  private void assertSummaryMatchesListing(String username, String password) {
+    DocumentContext listing = JsonPath.parse(restTemplate
+      .withBasicAuth(username, password)
+      .getForEntity("/cashcards?size=1000", String.class)
+      .getBody());
+    List<Double> amounts = listing.read("$[*].amount", List.class);
+
+    ResponseEntity<String> response = restTemplate
+      .withBasicAuth(username, password)
+      .getForEntity("/cashcards/summary", String.class);
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    DocumentContext summary = JsonPath.parse(response.getBody());
+
+    Number count = summary.read("$.count");
+    Number total = summary.read("$.total");
+    Number min = summary.read("$.min");
+    Number max = summary.read("$.max");
+    assertThat(count.intValue()).isEqualTo(amounts.size());
+    assertThat(total.doubleValue()).isCloseTo(amounts.stream().mapToDouble(Number::doubleValue).sum(), within(1e-6));
+    assertThat(min.doubleValue()).isEqualTo(amounts.stream().mapToDouble(Number::doubleValue).min().getAsDouble());
+    assertThat(max.doubleValue()).isEqualTo(amounts.stream().mapToDouble(Number::doubleValue).max().getAsDouble());
+  }
+
   /*
    * We should be able to list all CashCards owned by an authenticated user(IF POSSES ONE)
    */
@@ -239,6 +439,414 @@ class CashcardApplicationTests {
     assertThat(amounts).containsExactly(123.45);
   }
 
+  /*
+   * Cursor (keyset) paging should walk the same CashCards, in the same order, as the default listing
+   */
+  @Test
+  @DirtiesContext
+  void shouldWalkAllCashCardsWithACursor() {
+    for (double amount : new double[] { 5.0, 250.0, 77.7 }) {
+      restTemplate
+        .withBasicAuth("LeudiX1", "leo123")
+        .postForEntity("/cashcards", new CashCard(null, amount, null), Void.class);
+    }
+    ResponseEntity<String> listResponse = restTemplate
+      .withBasicAuth("LeudiX1", "leo123")
+      .getForEntity("/cashcards?size=100", String.class);
+    JSONArray expectedIds = JsonPath.parse(listResponse.getBody()).read("$[*].id");
+
+    List<Object> walkedIds = new ArrayList<>();
+    String next = "/cashcards?after=&size=1";
+    while (next != null) {
+      ResponseEntity<String> sliceResponse = restTemplate
+        .withBasicAuth("LeudiX1", "leo123")
+        .getForEntity(next, String.class);
+      assertThat(sliceResponse.getStatusCode()).isEqualTo(HttpStatus.OK);
+
+      DocumentContext slice = JsonPath.parse(sliceResponse.getBody());
+      JSONArray ids = slice.read("$.content[*].id");
+      assertThat(ids.size()).isLessThanOrEqualTo(1);
+      walkedIds.addAll(ids);
+      next = slice.read("$.next");
+    }
+
+    assertThat(walkedIds).containsExactlyElementsOf(expectedIds);
+  }
+
+  @Test
+  void shouldRejectAMalformedCursor() {
+    ResponseEntity<String> responseEntity = restTemplate
+      .withBasicAuth("LeudiX1", "leo123")
+      .getForEntity("/cashcards?after=not-a-cursor", String.class);
+    assertThat(responseEntity.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+  }
+
+  /*
+   * Successful credential checks are cached, wrong passwords must keep being rejected
+   */
+  @Test
+  void shouldRejectAWrongPasswordAfterASuccessfulLogin() {
+    ResponseEntity<String> goodResponse = restTemplate
+      .withBasicAuth("LeudiX1", "leo123")
+      .getForEntity("/cashcards", String.class);
+    assertThat(goodResponse.getStatusCode()).isEqualTo(HttpStatus.OK);
+
+    ResponseEntity<String> badResponse = restTemplate
+      .withBasicAuth("LeudiX1", "BAD-PASSWORD")
+      .getForEntity("/cashcards", String.class);
+    assertThat(badResponse.getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+  }
+
+  /*
+   * Repeated lookups of the same CashCard are served by the cache, and an update is visible right after it returns
+   */
+  @Test
+  @DirtiesContext
+  void shouldServeRepeatedLookupsFromTheCacheWithoutStaleReadsAfterAnUpdate() {
+    for (int i = 0; i < 3; i++) {
+      restTemplate.withBasicAuth("Sarah", "sara123").getForEntity("/cashcards/2", String.class);
+    }
+    DocumentContext stats = JsonPath.parse(restTemplate.withBasicAuth("Monitor", "monitor123").getForEntity("/actuator/cashcardcache", String.class).getBody());
+    Number hits = stats.read("$.hits");
+    assertThat(hits.longValue()).isGreaterThanOrEqualTo(2);
+
+    restTemplate
+      .withBasicAuth("Sarah", "sara123")
+      .exchange("/cashcards/2", HttpMethod.PUT, new HttpEntity<>(new CashCard(null, 42.42, null)), Void.class);
+
+    ResponseEntity<String> getResponse = restTemplate
+      .withBasicAuth("Sarah", "sara123")
+      .getForEntity("/cashcards/2", String.class);
+    Double amount = JsonPath.parse(getResponse.getBody()).read("$.amount");
+    assertThat(amount).isEqualTo(42.42);
+  }
+
+  /*
+   * Concurrent lookups of many owners keep the cache within max-entries, and invalidating one owner's CashCard
+   * leaves the others cached
+   */
+  @Test
+  void shouldBoundTheCacheAcrossOwnersAndOnlyDropInvalidatedCards() {
+    CashCardCache cache = new CashCardCache(true, 64, Duration.ofMinutes(1));
+    IntStream.range(0, 200 * 5).parallel()
+      .forEach(i -> cache.get("owner" + i / 5, (long) i % 5, () -> new CashCardView((long) i % 5, 1.0, "owner" + i / 5)));
+    assertThat(cache.stats().size()).isLessThanOrEqualTo(64);
+    assertThat(cache.stats().evictions()).isPositive();
+
+    cache.get("Sarah", 1L, () -> new CashCardView(1L, 1.0, "Sarah"));
+    cache.get("LeudiX1", 1L, () -> new CashCardView(1L, 2.0, "LeudiX1"));
+    cache.invalidate("Sarah", 1L);
+    assertThat(cache.get("Sarah", 1L, () -> new CashCardView(1L, 3.0, "Sarah")).amount()).isEqualTo(3.0);
+    assertThat(cache.get("LeudiX1", 1L, () -> new CashCardView(1L, 4.0, "LeudiX1")).amount()).isEqualTo(2.0);
+  }
+
+  /*
+   * The whole capacity is there for a single owner, and the bound holds even with fewer entries than stripes
+   */
+  @Test
+  void shouldLetOneOwnerFillTheCacheAndKeepSmallCachesBounded() {
+    CashCardCache cache = new CashCardCache(true, 64, Duration.ofMinutes(1));
+    for (long id = 0; id < 64; id++) {
+      long cashCardId = id;
+      cache.get("Sarah", cashCardId, () -> new CashCardView(cashCardId, 1.0, "Sarah"));
+    }
+    assertThat(cache.stats().size()).isEqualTo(64);
+    assertThat(cache.stats().evictions()).isZero();
+    for (long id = 0; id < 64; id++) {
+      assertThat(cache.get("Sarah", id, () -> null)).isNotNull();
+    }
+    cache.get("Sarah", 64L, () -> new CashCardView(64L, 1.0, "Sarah"));
+    assertThat(cache.stats().size()).isEqualTo(64);
+    assertThat(cache.stats().evictions()).isEqualTo(1);
+    assertThat(cache.get("Sarah", 0L, () -> null)).isNull();
+
+    CashCardCache small = new CashCardCache(true, 5, Duration.ofMinutes(1));
+    IntStream.range(0, 100).parallel()
+      .forEach(i -> small.get("owner" + i, 1L, () -> new CashCardView(1L, 1.0, "owner" + i)));
+    assertThat(small.stats().size()).isLessThanOrEqualTo(5);
+    assertThat(small.stats().evictions()).isGreaterThanOrEqualTo(95);
+  }
+
+  /*
+   * An unchanged CashCard (or list) is answered with 304 NOT MODIFIED once its ETag is sent back, a write changes the ETag
+   */
+  @Test
+  @DirtiesContext
+  void shouldAnswerNotModifiedUntilTheOwnersCashCardsChange() {
+    ResponseEntity<String> response = restTemplate.withBasicAuth("Sarah", "sara123").getForEntity("/cashcards/2", String.class);
+    String eTag = response.getHeaders().getETag();
+    assertThat(eTag).isNotNull();
+
+    HttpHeaders headers = new HttpHeaders();
+    headers.setIfNoneMatch(eTag);
+    ResponseEntity<String> notModified = restTemplate
+      .withBasicAuth("Sarah", "sara123")
+      .exchange("/cashcards/2", HttpMethod.GET, new HttpEntity<>(headers), String.class);
+    assertThat(notModified.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+    assertThat(notModified.getBody()).isNull();
+
+    ResponseEntity<String> list = restTemplate
+      .withBasicAuth("Sarah", "sara123")
+      .exchange("/cashcards", HttpMethod.GET, new HttpEntity<>(headers), String.class);
+    assertThat(list.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+
+    restTemplate
+      .withBasicAuth("Sarah", "sara123")
+      .exchange("/cashcards/2", HttpMethod.PUT, new HttpEntity<>(new CashCard(null, 7.77, null)), Void.class);
+
+    ResponseEntity<String> modified = restTemplate
+      .withBasicAuth("Sarah", "sara123")
+      .exchange("/cashcards/2", HttpMethod.GET, new HttpEntity<>(headers), String.class);
+    assertThat(modified.getStatusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(modified.getHeaders().getETag()).isNotEqualTo(eTag);
+    Double amount = JsonPath.parse(modified.getBody()).read("$.amount");
+    assertThat(amount).isEqualTo(7.77);
+  }
+
+  /*
+   * An update sent with an outdated If-Match is rejected with 412 PRECONDITION FAILED and changes nothing
+   */
+  @Test
+  @DirtiesContext
+  void shouldNotUpdateACashCardWithAnOutdatedIfMatch() {
+    String eTag = restTemplate.withBasicAuth("Sarah", "sara123").getForEntity("/cashcards/2", String.class).getHeaders().getETag();
+
+    HttpHeaders headers = new HttpHeaders();
+    headers.setIfMatch(eTag);
+    ResponseEntity<Void> first = restTemplate
+      .withBasicAuth("Sarah", "sara123")
+      .exchange("/cashcards/2", HttpMethod.PUT, new HttpEntity<>(new CashCard(null, 11.11, null), headers), Void.class);
+    assertThat(first.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+    assertThat(first.getHeaders().getETag()).isNotEqualTo(eTag);
+
+    ResponseEntity<Void> second = restTemplate
+      .withBasicAuth("Sarah", "sara123")
+      .exchange("/cashcards/2", HttpMethod.PUT, new HttpEntity<>(new CashCard(null, 22.22, null), headers), Void.class);
+    assertThat(second.getStatusCode()).isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+    Double amount = JsonPath.parse(restTemplate.withBasicAuth("Sarah", "sara123").getForEntity("/cashcards/2", String.class).getBody())
+      .read("$.amount");
+    assertThat(amount).isEqualTo(11.11);
+  }
+
+  /*
+   * A multi-get returns the requested CashCards of the owner in the order asked for, each once,
+   * leaving out unknown ids and other owners' CashCards
+   */
+  @Test
+  @DirtiesContext
+  void shouldReturnManyCashCardsInOneRequest() {
+    List<Long> ids = new ArrayList<>();
+    for (double amount : new double[] { 1.11, 2.22, 3.33 }) {
+      URI location = restTemplate.withBasicAuth("Sarah", "sara123").postForLocation("/cashcards", new CashCard(null, amount, null));
+      ids.add(Long.parseLong(location.getPath().substring(location.getPath().lastIndexOf('/') + 1)));
+    }
+    URI someoneElses = restTemplate.withBasicAuth("LeudiX1", "leo123").postForLocation("/cashcards", new CashCard(null, 4.44, null));
+    long someoneElsesId = Long.parseLong(someoneElses.getPath().substring(someoneElses.getPath().lastIndexOf('/') + 1));
+    List<Long> requested = List.of(ids.get(2), someoneElsesId, ids.get(0), 999_999L, ids.get(0));
+
+    ResponseEntity<String> response = restTemplate
+      .withBasicAuth("Sarah", "sara123")
+      .getForEntity("/cashcards?ids=" + requested.stream().map(String::valueOf).collect(Collectors.joining(",")), String.class);
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    JSONArray amounts = JsonPath.parse(response.getBody()).read("$[*].amount");
+    assertThat(amounts).containsExactly(3.33, 1.11);
+
+    ResponseEntity<String> lookup = restTemplate
+      .withBasicAuth("Sarah", "sara123")
+      .postForEntity("/cashcards/lookup", requested, String.class);
+    assertThat(lookup.getStatusCode()).isEqualTo(HttpStatus.OK);
+    JSONArray lookedUp = JsonPath.parse(lookup.getBody()).read("$[*].id");
+    assertThat(lookedUp).containsExactly(ids.get(2).intValue(), ids.get(0).intValue());
+
+    List<Long> tooMany = LongStream.rangeClosed(1, 1_001).boxed().toList();
+    assertThat(restTemplate.withBasicAuth("Sarah", "sara123").postForEntity("/cashcards/lookup", tooMany, String.class).getStatusCode())
+      .isEqualTo(HttpStatus.BAD_REQUEST);
+    assertThat(restTemplate.withBasicAuth("Sarah", "sara123").getForEntity("/cashcards?ids=", String.class).getStatusCode())
+      .isEqualTo(HttpStatus.BAD_REQUEST);
+    /* Multi-get and cursor mode at once */
+    assertThat(restTemplate.withBasicAuth("Sarah", "sara123").getForEntity("/cashcards?ids=1&after=", String.class).getStatusCode())
+      .isEqualTo(HttpStatus.BAD_REQUEST);
+  }
+
+  /*
+   * An amount-range search returns only the owner's CashCards in the range, in slices following the next links,
+   * ascending or descending by amount
+   */
+  @Test
+  @DirtiesContext
+  void shouldSearchCashCardsByAmountRange() {
+    for (double amount : new double[] { 400.00, 200.00, 350.00, 250.00, 300.00 }) {
+      restTemplate.withBasicAuth("Sarah", "sara123").postForEntity("/cashcards", new CashCard(null, amount, null), Void.class);
+    }
+
+    ResponseEntity<String> first = restTemplate
+      .withBasicAuth("Sarah", "sara123")
+      .getForEntity("/cashcards/search?minAmount=200&maxAmount=350&size=2", String.class);
+    assertThat(first.getStatusCode()).isEqualTo(HttpStatus.OK);
+    DocumentContext firstSlice = JsonPath.parse(first.getBody());
+    JSONArray firstAmounts = firstSlice.read("$.content[*].amount");
+    assertThat(firstAmounts).containsExactly(200.0, 250.0);
+
+    ResponseEntity<String> second = restTemplate
+      .withBasicAuth("Sarah", "sara123")
+      .getForEntity(URI.create(firstSlice.read("$.next", String.class)), String.class);
+    DocumentContext secondSlice = JsonPath.parse(second.getBody());
+    JSONArray secondAmounts = secondSlice.read("$.content[*].amount");
+    assertThat(secondAmounts).containsExactly(300.0, 350.0);
+    assertThat(secondSlice.read("$.next", String.class)).isNull();
+
+    ResponseEntity<String> descending = restTemplate
+      .withBasicAuth("Sarah", "sara123")
+      .getForEntity("/cashcards/search?minAmount=250&maxAmount=399.99&sort=amount,desc", String.class);
+    JSONArray descendingAmounts = JsonPath.parse(descending.getBody()).read("$.content[*].amount");
+    assertThat(descendingAmounts).containsExactly(350.0, 300.0, 250.0);
+
+    ResponseEntity<String> someoneElses = restTemplate
+      .withBasicAuth("LeudiX1", "leo123")
+      .getForEntity("/cashcards/search?minAmount=200&maxAmount=350", String.class);
+    JSONArray someoneElsesOwners = JsonPath.parse(someoneElses.getBody()).read("$.content[*].owner");
+    assertThat(someoneElsesOwners).doesNotContain("Sarah");
+
+    ResponseEntity<String> emptyRange = restTemplate
+      .withBasicAuth("Sarah", "sara123")
+      .getForEntity("/cashcards/search?minAmount=350&maxAmount=200", String.class);
+    assertThat(emptyRange.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+  }
+
+  /*
+   * Every change of a CashCard's amount is in its ledger, in order, and the history is read in slices after a sequence
+   */
+  @Test
+  @DirtiesContext
+  void shouldRecordEveryChangeInTheCashCardsHistory() {
+    URI location = restTemplate
+      .withBasicAuth("Sarah", "sara123")
+      .postForEntity("/cashcards", new CashCard(null, 100.00, null), Void.class)
+      .getHeaders()
+      .getLocation();
+    for (double amount : new double[] { 150.25, 120.00 }) {
+      ResponseEntity<Void> update = restTemplate
+        .withBasicAuth("Sarah", "sara123")
+        .exchange(location, HttpMethod.PUT, new HttpEntity<>(new CashCard(null, amount, null)), Void.class);
+      assertThat(update.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+    }
+
+    ResponseEntity<String> history = restTemplate.withBasicAuth("Sarah", "sara123").getForEntity(location + "/history", String.class);
+    assertThat(history.getStatusCode()).isEqualTo(HttpStatus.OK);
+    DocumentContext documentContext = JsonPath.parse(history.getBody());
+    JSONArray deltas = documentContext.read("$[*].delta");
+    assertThat(deltas).containsExactly(100.0, 50.25, -30.25);
+    List<Number> sequences = documentContext.read("$[*].sequence");
+    assertThat(sequences).extracting(Number::longValue).containsExactly(1L, 2L, 3L);
+
+    ResponseEntity<String> slice = restTemplate
+      .withBasicAuth("Sarah", "sara123")
+      .getForEntity(location + "/history?size=1&from=" + sequences.get(0), String.class);
+    assertThat(slice.getStatusCode()).isEqualTo(HttpStatus.OK);
+    JSONArray sliceDeltas = JsonPath.parse(slice.getBody()).read("$[*].delta");
+    assertThat(sliceDeltas).containsExactly(50.25);
+    assertThat(slice.getHeaders().getFirst(HttpHeaders.LINK)).contains("from=" + sequences.get(1));
+
+    ResponseEntity<String> someoneElses = restTemplate.withBasicAuth("LeudiX1", "leo123").getForEntity(location + "/history", String.class);
+    assertThat(someoneElses.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+
+    /* Concurrent updates and the delete go on numbering the CashCard's ledger in commit order, without gaps */
+    LongStream.rangeClosed(1, 8).parallel().forEach(i -> restTemplate
+      .withBasicAuth("Sarah", "sara123")
+      .exchange(location, HttpMethod.PUT, new HttpEntity<>(new CashCard(null, 200.00 + i, null)), Void.class));
+    restTemplate.withBasicAuth("Sarah", "sara123").exchange(location, HttpMethod.DELETE, null, Void.class);
+    DocumentContext all = JsonPath.parse(restTemplate
+      .withBasicAuth("Sarah", "sara123")
+      .getForEntity(location + "/history?size=100", String.class)
+      .getBody());
+    List<Number> allSequences = all.read("$[*].sequence");
+    assertThat(allSequences).extracting(Number::longValue).containsExactlyElementsOf(LongStream.rangeClosed(1, 12).boxed().toList());
+    List<Number> allDeltas = all.read("$[*].delta");
+    double balance = 0;
+    for (int i = 0; i < allDeltas.size() - 1; i++) {
+      balance += allDeltas.get(i).doubleValue();
+      if (i >= 3) { /* every entry applies to the amount the one before it left: in sequence order, they add up to an amount that was set */
+        assertThat(Math.round(balance * 100) / 100.0).isBetween(201.00, 208.00);
+        assertThat(balance % 1.0).isCloseTo(0.0, within(1e-9));
+      }
+    }
+    assertThat(balance + allDeltas.get(allDeltas.size() - 1).doubleValue()).isCloseTo(0.0, within(1e-9));
+  }
+
+  /*
+   * Ledger deltas are exact decimals: after fractional updates large and small the history adds up to the balance to the last
+   * digit, where doubles would have drifted. Amounts with more decimals than the ledger keeps are rejected
+   */
+  @Test
+  @DirtiesContext
+  void shouldKeepTheHistoryAddingUpToTheBalanceExactly() {
+    URI location = restTemplate
+      .withBasicAuth("Sarah", "sara123")
+      .postForLocation("/cashcards", new CashCard(null, 0.1, null));
+    double amount = 0.1;
+    for (int i = 1; i <= 15; i++) { /* within the write rate limit */
+      amount = i % 2 == 0 ? i * 0.07 : 1_000_000 + i / 3.0 * 0.03;
+      amount = Math.round(amount * 10_000) / 10_000.0;
+      ResponseEntity<Void> update = restTemplate
+        .withBasicAuth("Sarah", "sara123")
+        .exchange(location, HttpMethod.PUT, new HttpEntity<>(new CashCard(null, amount, null)), Void.class);
+      assertThat(update.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+    }
+    List<Object> deltas = JsonPath.parse(restTemplate
+      .withBasicAuth("Sarah", "sara123")
+      .getForEntity(location + "/history?size=100", String.class)
+      .getBody()).read("$[*].delta");
+    assertThat(deltas).hasSize(16);
+    BigDecimal sum = deltas.stream().map(delta -> new BigDecimal(delta.toString())).reduce(BigDecimal.ZERO, BigDecimal::add);
+    assertThat(sum).isEqualByComparingTo(BigDecimal.valueOf(amount));
+    Number balance = JsonPath.parse(restTemplate.withBasicAuth("Sarah", "sara123").getForEntity(location, String.class).getBody())
+      .read("$.amount");
+    assertThat(sum).isEqualByComparingTo(new BigDecimal(balance.toString()));
+
+    for (double unrecordable : new double[] { 0.12345678901, 1e28 }) {
+      ResponseEntity<Void> update = restTemplate
+        .withBasicAuth("Sarah", "sara123")
+        .exchange(location, HttpMethod.PUT, new HttpEntity<>(new CashCard(null, unrecordable, null)), Void.class);
+      assertThat(update.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+  }
+
+  /*
+   * Endpoint, repository, connection pool, Hibernate and authentication metrics are scraped in Prometheus format
+   */
+  @Test
+  @DirtiesContext
+  void shouldExposePrometheusMetrics() {
+    restTemplate.withBasicAuth("LeudiX1", "leo123").getForEntity("/cashcards/1", String.class);
+
+    ResponseEntity<String> response = restTemplate.withBasicAuth("Monitor", "monitor123").getForEntity("/actuator/prometheus", String.class);
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(response.getBody())
+      .contains("http_server_requests_seconds_bucket")
+      .contains("uri=\"/cashcards/{requestedId}\"")
+      .contains("spring_data_repository_invocations_seconds")
+      .contains("hikaricp_connections")
+      .contains("hibernate_query_executions")
+      .contains("spring_security_authentications_seconds")
+      .contains("cashcard_cache_requests_total");
+  }
+
+  /*
+   * Health is public, the other actuator endpoints are for monitoring only: not for anonymous requests, nor for card owners
+   */
+  @Test
+  void shouldOnlyLetMonitoringSeeMetrics() {
+    assertThat(restTemplate.getForEntity("/actuator/health", String.class).getStatusCode()).isEqualTo(HttpStatus.OK);
+    for (String endpoint : List.of("/actuator/prometheus", "/actuator/metrics", "/actuator/cashcardcache")) {
+      assertThat(restTemplate.getForEntity(endpoint, String.class).getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+      assertThat(restTemplate.withBasicAuth("Sarah", "sara123").getForEntity(endpoint, String.class).getStatusCode())
+        .isEqualTo(HttpStatus.FORBIDDEN);
+      assertThat(restTemplate.withBasicAuth("Monitor", "monitor123").getForEntity(endpoint, String.class).getStatusCode())
+        .isEqualTo(HttpStatus.OK);
+    }
+  }
+
   /*
    * A user who don't posses a cash card shouldn't be able to get access to Family Card
    */
@@ -0,0 +1,308 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.JsonPath;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+
+/*
+ * GET /cashcards/stream, read the way an EventSource would. A single event may wait for delivery,
+ * any more and the subscriber is too slow; one delivery thread, so a stalled write would hold up everyone
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+  "cashcard.rate-limit.enabled=false",
+  "cashcard.stream.buffer-size=1",
+  "cashcard.stream.replay-size=100000",
+  "cashcard.stream.delivery-threads=1",
+  "cashcard.stream.write-timeout=500ms",
+  "cashcard.stream.max-subscribers-per-owner=4",
+  "cashcard.stream.heartbeat=100ms"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class ChangeFeedTests {
+
+  private static final HttpClient CLIENT = HttpClient.newHttpClient();
+
+  @Autowired
+  private TestRestTemplate restTemplate;
+
+  @Autowired
+  private CashCardChangeFeed changeFeed;
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  @LocalServerPort
+  private int port;
+
+  private record Event(String id, String name, String data) {
+  }
+
+  /* The events of one stream, as they arrive; a null name once the server ended it */
+  private final class EventStream implements AutoCloseable {
+
+    private final HttpResponse<Stream<String>> response;
+    private final BlockingQueue<Event> events = new LinkedBlockingQueue<>();
+
+    EventStream(String user, String password, String lastEventId) throws Exception {
+      HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/cashcards/stream"))
+        .header("Accept", "text/event-stream")
+        .header("Authorization", "Basic " + Base64.getEncoder().encodeToString((user + ":" + password).getBytes(StandardCharsets.UTF_8)));
+      if (lastEventId != null) {
+        request.header("Last-Event-ID", lastEventId);
+      }
+      response = CLIENT.send(request.build(), HttpResponse.BodyHandlers.ofLines());
+      Thread reader = new Thread(this::read, "event-stream-reader");
+      reader.setDaemon(true);
+      reader.start();
+    }
+
+    private void read() {
+      String id = null;
+      String name = null;
+      StringBuilder data = new StringBuilder();
+      try {
+        for (String line : (Iterable<String>) response.body()::iterator) {
+          if (line.isEmpty()) {
+            if (name != null) {
+              events.add(new Event(id, name, data.toString()));
+            }
+            id = null;
+            name = null;
+            data.setLength(0);
+          } else if (line.startsWith("id:")) {
+            id = line.substring(3);
+          } else if (line.startsWith("event:")) {
+            name = line.substring(6);
+          } else if (line.startsWith("data:")) {
+            data.append(line.substring(5));
+          }
+        }
+      } catch (RuntimeException e) {
+        /* closed by the test */
+      }
+      events.add(new Event(null, null, null));
+    }
+
+    Event next() throws InterruptedException {
+      Event event = events.poll(10, TimeUnit.SECONDS);
+      assertThat(event).as("next event").isNotNull();
+      return event;
+    }
+
+    @Override
+    public void close() throws IOException {
+      response.body().close();
+    }
+  }
+
+  /*
+   * The owner's creates, updates and deletes arrive in commit order, nobody else's; a reconnect with
+   * the Last-Event-ID it got resumes with what it missed
+   */
+  @Test
+  void shouldPushTheOwnersChangesAndResumeFromTheLastEventId() throws Exception {
+    Event subscribed;
+    String lastEventId;
+    try (EventStream sarah = new EventStream("Sarah", "sara123", null);
+        EventStream leudiX1 = new EventStream("LeudiX1", "leo123", null)) {
+      subscribed = sarah.next();
+      assertThat(subscribed.name()).isEqualTo("subscribed");
+      assertThat(sarah.response.statusCode()).isEqualTo(200);
+      assertThat(sarah.response.headers().firstValue("Content-Type")).hasValueSatisfying(type -> assertThat(type).startsWith("text/event-stream"));
+      assertThat(leudiX1.next().name()).isEqualTo("subscribed");
+
+      URI location = restTemplate.withBasicAuth("Sarah", "sara123").postForLocation("/cashcards", new CashCard(null, 25.00, null));
+      restTemplate.withBasicAuth("Sarah", "sara123")
+        .exchange(location, HttpMethod.PUT, new HttpEntity<>(new CashCard(null, 30.00, null)), Void.class);
+      restTemplate.withBasicAuth("Sarah", "sara123").exchange(location, HttpMethod.DELETE, null, Void.class);
+      restTemplate.withBasicAuth("LeudiX1", "leo123").postForLocation("/cashcards", new CashCard(null, 1.00, null));
+
+      Event created = sarah.next();
+      assertThat(created.name()).isEqualTo("created");
+      DocumentContext json = JsonPath.parse(created.data());
+      assertThat(json.read("$.id", Number.class).longValue()).isEqualTo(Long.parseLong(location.getPath().replace("/cashcards/", "")));
+      assertThat(json.read("$.amount", Double.class)).isEqualTo(25.00);
+      Event updated = sarah.next();
+      assertThat(updated.name()).isEqualTo("updated");
+      assertThat(JsonPath.parse(updated.data()).read("$.previousAmount", Double.class)).isEqualTo(25.00);
+      assertThat(JsonPath.parse(updated.data()).read("$.amount", Double.class)).isEqualTo(30.00);
+      Event deleted = sarah.next();
+      assertThat(deleted.name()).isEqualTo("deleted");
+      assertThat(Long.parseLong(subscribed.id())).isLessThan(Long.parseLong(created.id()));
+      assertThat(Long.parseLong(created.id())).isLessThan(Long.parseLong(updated.id()));
+      assertThat(Long.parseLong(updated.id())).isLessThan(Long.parseLong(deleted.id()));
+
+      Event leudiX1sOwn = leudiX1.next();
+      assertThat(leudiX1sOwn.name()).isEqualTo("created");
+      assertThat(JsonPath.parse(leudiX1sOwn.data()).read("$.owner", String.class)).isEqualTo("LeudiX1");
+      lastEventId = updated.id();
+    }
+
+    /* Disconnected after the update: the delete and whatever came after it are replayed */
+    restTemplate.withBasicAuth("Sarah", "sara123").postForEntity("/cashcards", new CashCard(null, 5.00, null), Void.class);
+    try (EventStream resumed = new EventStream("Sarah", "sara123", lastEventId)) {
+      assertThat(resumed.next().name()).isEqualTo("deleted");
+      Event created = resumed.next();
+      assertThat(created.name()).isEqualTo("created");
+      assertThat(JsonPath.parse(created.data()).read("$.amount", Double.class)).isEqualTo(5.00);
+    }
+
+    /* Nothing to resume from: the client has to reload */
+    try (EventStream unknown = new EventStream("Sarah", "sara123", "1")) {
+      assertThat(unknown.next().name()).isEqualTo("resync");
+    }
+    assertThat(restTemplate.withBasicAuth("Lucy2", "lucy123").getForEntity("/cashcards/stream", String.class).getStatusCode())
+      .isEqualTo(HttpStatus.FORBIDDEN);
+  }
+
+  /*
+   * A subscriber that can't keep up is closed instead of queueing without bound, and resumes from
+   * its Last-Event-ID without losing or repeating anything
+   */
+  @Test
+  void shouldDropSlowSubscribersWhoThenResumeWithoutGaps() throws Exception {
+    List<Long> received = new ArrayList<>();
+    String lastEventId = null;
+    try (EventStream slow = new EventStream("Sarah", "sara123", null)) {
+      Event subscribed = slow.next();
+      assertThat(subscribed.name()).isEqualTo("subscribed");
+      lastEventId = subscribed.id(); /* it may be dropped before it got any of the updates */
+      for (int i = 0; i < 2_000; i++) {
+        changeFeed.on(CashCardEvent.updated("Sarah", 99, (double) i, (double) i + 1));
+      }
+      for (Event event = slow.next(); event.name() != null; event = slow.next()) {
+        received.add(Long.parseLong(event.id()));
+        lastEventId = event.id();
+      }
+    }
+    assertThat(received).hasSizeLessThan(2_000);
+    assertThat(meterRegistry.get("cashcard.stream.dropped").functionCounter().count()).isPositive();
+
+    try (EventStream resumed = new EventStream("Sarah", "sara123", lastEventId)) {
+      while (received.size() < 2_000) {
+        Event event = resumed.next();
+        assertThat(event.name()).isEqualTo("updated");
+        received.add(Long.parseLong(event.id()));
+      }
+    }
+    for (int i = 1; i < received.size(); i++) {
+      assertThat(received.get(i)).isEqualTo(received.get(i - 1) + 1);
+    }
+  }
+
+  /*
+   * A client that stops reading blocks the write to it: past the write timeout it's dropped and the
+   * delivery thread it holds is replaced, so other streams go on
+   */
+  @Test
+  void shouldNotLetAStalledClientHoldUpTheOthers() throws Exception {
+    String lastEventId;
+    try (EventStream sarah = new EventStream("Sarah", "sara123", null)) {
+      lastEventId = sarah.next().id();
+    }
+    /* More than the socket buffers take */
+    for (int i = 0; i < 100_000; i++) {
+      changeFeed.on(CashCardEvent.updated("Sarah", 99, (double) i, (double) i + 1));
+    }
+    /* Resumes with all of them, but never reads them */
+    try (Socket stalled = new Socket()) {
+      stalled.setReceiveBufferSize(1024);
+      stalled.connect(new InetSocketAddress("localhost", port));
+      stalled.getOutputStream().write(("GET /cashcards/stream HTTP/1.1\r\n"
+        + "Host: localhost\r\n"
+        + "Accept: text/event-stream\r\n"
+        + "Authorization: Basic " + Base64.getEncoder().encodeToString("Sarah:sara123".getBytes(StandardCharsets.UTF_8)) + "\r\n"
+        + CashCardChangeFeed.LAST_EVENT_ID + ": " + lastEventId + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+      stalled.getOutputStream().flush();
+
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+      while (meterRegistry.get("cashcard.stream.stalled").functionCounter().count() == 0 && System.nanoTime() < deadline) {
+        Thread.sleep(50);
+      }
+      assertThat(meterRegistry.get("cashcard.stream.stalled").functionCounter().count()).isEqualTo(1);
+
+      try (EventStream leudiX1 = new EventStream("LeudiX1", "leo123", null)) {
+        assertThat(leudiX1.next().name()).isEqualTo("subscribed");
+        restTemplate.withBasicAuth("LeudiX1", "leo123").postForEntity("/cashcards", new CashCard(null, 1.00, null), Void.class);
+        assertThat(leudiX1.next().name()).isEqualTo("created");
+      }
+    }
+  }
+
+  /*
+   * An owner's streams are capped, and the recent events of an owner nobody listens to are forgotten after
+   * a while: resuming from before then is a resync
+   */
+  @Test
+  void shouldCapStreamsPerOwnerAndForgetIdleOwners() throws Exception {
+    List<EventStream> streams = new ArrayList<>();
+    try {
+      for (int i = 0; i < 4; i++) {
+        EventStream stream = new EventStream("LeudiX1", "leo123", null);
+        streams.add(stream);
+        assertThat(stream.next().name()).isEqualTo("subscribed");
+      }
+      ResponseEntity<String> fifth = restTemplate.withBasicAuth("LeudiX1", "leo123").getForEntity("/cashcards/stream", String.class);
+      assertThat(fifth.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+      try (EventStream sarah = new EventStream("Sarah", "sara123", null)) {
+        assertThat(sarah.next().name()).isEqualTo("subscribed");
+      }
+    } finally {
+      for (EventStream stream : streams) {
+        stream.close();
+      }
+    }
+
+    /* The heartbeats find the closed streams, which makes room again */
+    awaitZero("cashcard.stream.subscribers");
+    String lastEventId;
+    try (EventStream leudiX1 = new EventStream("LeudiX1", "leo123", null)) {
+      lastEventId = leudiX1.next().id();
+    }
+    /* Then the owners stay idle for feed-idle-timeout (10m, swept here rather than waited for), and miss a create */
+    awaitZero("cashcard.stream.subscribers");
+    assertThat(changeFeed.evictIdleFeeds(System.nanoTime())).isZero();
+    assertThat(changeFeed.evictIdleFeeds(System.nanoTime() + Duration.ofMinutes(10).toNanos() + 1)).isEqualTo(2);
+    assertThat(meterRegistry.get("cashcard.stream.feeds").gauge().value()).isZero();
+    restTemplate.withBasicAuth("LeudiX1", "leo123").postForEntity("/cashcards", new CashCard(null, 1.00, null), Void.class);
+    try (EventStream resumed = new EventStream("LeudiX1", "leo123", lastEventId)) {
+      assertThat(resumed.next().name()).isEqualTo("resync");
+    }
+  }
+
+  private void awaitZero(String gauge) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+    while (meterRegistry.get(gauge).gauge().value() > 0 && System.nanoTime() < deadline) {
+      Thread.sleep(100);
+    }
+    assertThat(meterRegistry.get(gauge).gauge().value()).as(gauge).isZero();
+  }
+}
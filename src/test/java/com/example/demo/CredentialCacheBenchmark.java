@@ -0,0 +1,50 @@
+package com.example.demo;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Authenticated requests per second with and without the HTTP Basic credential
+ * cache, e.g. -Djmh.args="CredentialCacheBenchmark -t 8"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class CredentialCacheBenchmark {
+
+    @Param({ "true", "false" })
+    public boolean credentialCache;
+
+    private BenchmarkApplication application;
+    private RestTemplate client;
+
+    @Setup(Level.Trial)
+    public void start() {
+        application = BenchmarkApplication.start(WebApplicationType.SERVLET,
+                "cashcard.security.credential-cache.enabled=" + credentialCache)
+                .seed(BenchmarkApplication.OWNER, 100);
+        client = application.client();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        application.close();
+    }
+
+    @Benchmark
+    public String findById() {
+        return client.getForObject("/cashcards/{id}", String.class, application.randomId());
+    }
+}
@@ -0,0 +1,257 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.JsonPath;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/*
+ * A long max-delay, so creates sent at about the same time reliably end up in one group commit
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+  "cashcard.group-commit.enabled=true",
+  "cashcard.group-commit.batch-size=50",
+  "cashcard.group-commit.max-delay=1s",
+  "cashcard.rate-limit.enabled=false"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class GroupCommitTests {
+
+  @Autowired
+  private TestRestTemplate restTemplate;
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  /*
+   * Concurrent creates are committed in fewer transactions than creates, each one still answered 201 CREATED
+   * with the location of its own CashCard, which is readable right away
+   */
+  @Test
+  void shouldGroupConcurrentCreatesAndAnswerWithTheirCommittedIds() throws Exception {
+    /* Credentials checked once up front, so the creates don't queue up behind BCrypt */
+    restTemplate.withBasicAuth("LeudiX1", "leo123").getForEntity("/cashcards", String.class);
+
+    int creates = 20;
+    List<CompletableFuture<ResponseEntity<Void>>> responses = new ArrayList<>();
+    ExecutorService clients = Executors.newFixedThreadPool(creates);
+    try {
+      for (int i = 0; i < creates; i++) {
+        double amount = 100.0 + i;
+        responses.add(CompletableFuture.supplyAsync(() -> restTemplate
+          .withBasicAuth("LeudiX1", "leo123")
+          .postForEntity("/cashcards", new CashCard(null, amount, null), Void.class), clients));
+      }
+
+      Set<URI> locations = new HashSet<>();
+      for (CompletableFuture<ResponseEntity<Void>> response : responses) {
+        assertThat(response.get().getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        locations.add(response.get().getHeaders().getLocation());
+      }
+      assertThat(locations).hasSize(creates);
+
+      for (URI location : locations) {
+        ResponseEntity<String> created = restTemplate.withBasicAuth("LeudiX1", "leo123").getForEntity(location, String.class);
+        assertThat(created.getStatusCode()).isEqualTo(HttpStatus.OK);
+        DocumentContext documentContext = JsonPath.parse(created.getBody());
+        assertThat(documentContext.read("$.owner", String.class)).isEqualTo("LeudiX1");
+      }
+    } finally {
+      clients.shutdown();
+    }
+
+    DistributionSummary batchSizes = meterRegistry.get("cashcard.group-commit.batch.size").summary();
+    assertThat(batchSizes.totalAmount()).isEqualTo(creates);
+    assertThat(batchSizes.count()).isLessThan(creates);
+    assertThat(meterRegistry.get("cashcard.group-commit.commit").timer().count()).isEqualTo(batchSizes.count());
+  }
+
+  /*
+   * A batch failing on one CashCard (no amount) is retried card by card: the others are still created
+   */
+  @Test
+  void shouldRetryAFailedBatchCardByCard() throws Exception {
+    restTemplate.withBasicAuth("LeudiX1", "leo123").getForEntity("/cashcards", String.class);
+
+    List<CompletableFuture<ResponseEntity<Void>>> responses = new ArrayList<>();
+    ExecutorService clients = Executors.newFixedThreadPool(3);
+    try {
+      for (Double amount : new Double[] { 1.0, null, 3.0 }) {
+        responses.add(CompletableFuture.supplyAsync(() -> restTemplate
+          .withBasicAuth("LeudiX1", "leo123")
+          .postForEntity("/cashcards", new CashCard(null, amount, null), Void.class), clients));
+      }
+      assertThat(responses.get(0).get().getStatusCode()).isEqualTo(HttpStatus.CREATED);
+      assertThat(responses.get(1).get().getStatusCode().isError()).isTrue();
+      assertThat(responses.get(2).get().getStatusCode()).isEqualTo(HttpStatus.CREATED);
+    } finally {
+      clients.shutdown();
+    }
+    assertThat(restTemplate.withBasicAuth("LeudiX1", "leo123").getForEntity(responses.get(2).get().getHeaders().getLocation(), String.class)
+      .getStatusCode()).isEqualTo(HttpStatus.OK);
+  }
+
+  /*
+   * Same with a batch rolled back by the database itself (a check constraint): the others are created anew,
+   * each once, and their created events are published (they show in the summary)
+   */
+  @Test
+  void shouldRetryABatchTheDatabaseRejectedWithNewCashCards() throws Exception {
+    jdbcTemplate.execute("alter table cash_card add constraint no_thirteen check (amount <> 13.0)");
+    try {
+      int count = JsonPath.parse(restTemplate.withBasicAuth("LeudiX1", "leo123").getForEntity("/cashcards/summary", String.class).getBody())
+        .read("$.count", Integer.class);
+
+      List<CompletableFuture<ResponseEntity<Void>>> responses = new ArrayList<>();
+      ExecutorService clients = Executors.newFixedThreadPool(3);
+      try {
+        for (double amount : new double[] { 1.0, 13.0, 3.0 }) {
+          responses.add(CompletableFuture.supplyAsync(() -> restTemplate
+            .withBasicAuth("LeudiX1", "leo123")
+            .postForEntity("/cashcards", new CashCard(null, amount, null), Void.class), clients));
+        }
+        assertThat(responses.get(0).get().getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(responses.get(1).get().getStatusCode().isError()).isTrue();
+        assertThat(responses.get(2).get().getStatusCode()).isEqualTo(HttpStatus.CREATED);
+      } finally {
+        clients.shutdown();
+      }
+      assertThat(responses.get(0).get().getHeaders().getLocation()).isNotEqualTo(responses.get(2).get().getHeaders().getLocation());
+      for (int i : new int[] { 0, 2 }) {
+        ResponseEntity<String> created = restTemplate.withBasicAuth("LeudiX1", "leo123")
+          .getForEntity(responses.get(i).get().getHeaders().getLocation(), String.class);
+        assertThat(created.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(JsonPath.parse(created.getBody()).read("$.amount", Double.class)).isEqualTo(i == 0 ? 1.0 : 3.0);
+      }
+      assertThat(jdbcTemplate.queryForObject("select count(*) from cash_card where owner = 'LeudiX1' and amount in (1.0, 3.0)", Integer.class))
+        .isEqualTo(2);
+      assertThat(JsonPath.parse(restTemplate.withBasicAuth("LeudiX1", "leo123").getForEntity("/cashcards/summary", String.class).getBody())
+        .read("$.count", Integer.class)).isEqualTo(count + 2);
+    } finally {
+      jdbcTemplate.execute("alter table cash_card drop constraint no_thirteen");
+    }
+  }
+
+  /*
+   * Past the queue capacity, and once stopped, creates are rejected right away (503 at the controller);
+   * a create still queued at the timeout is taken back and never committed, while one already being
+   * committed is waited for. Only committed CashCards get a created event
+   */
+  @Test
+  void shouldRejectCreatesWhenFullOrStoppedAndTakeBackTimedOutOnes() throws Exception {
+    BlockingLedger ledger = new BlockingLedger();
+    List<Object> events = new CopyOnWriteArrayList<>();
+    CashCardGroupCommitter committer = new CashCardGroupCommitter(ledger, new CashCardShards(new StandardEnvironment()), events::add,
+      true, 2, 1, Duration.ZERO, Duration.ofSeconds(10));
+    committer.start();
+    try {
+      CashCardGroupCommitter.Pending first = committer.submit(new CashCard(null, 1.0, "Sarah"));
+      assertThat(ledger.committing.await(10, TimeUnit.SECONDS)).isTrue();
+      CashCardGroupCommitter.Pending second = committer.submit(new CashCard(null, 2.0, "Sarah"));
+      CashCardGroupCommitter.Pending third = committer.submit(new CashCard(null, 3.0, "Sarah"));
+      assertThat(committer.submit(new CashCard(null, 4.0, "Sarah"))).isNull();
+
+      ledger.release.countDown();
+      assertThat(List.of(committer.await(first), committer.await(second), committer.await(third)))
+        .extracting(CashCard::getAmount).containsExactly(1.0, 2.0, 3.0);
+      assertThat(events).extracting(event -> ((CashCardEvent) event).amount()).containsExactly(1.0, 2.0, 3.0);
+    } finally {
+      ledger.release.countDown();
+      committer.stop();
+    }
+    assertThat(committer.submit(new CashCard(null, 5.0, "Sarah"))).isNull();
+
+    BlockingLedger stuck = new BlockingLedger();
+    events.clear();
+    CashCardGroupCommitter impatient = new CashCardGroupCommitter(stuck, new CashCardShards(new StandardEnvironment()), events::add,
+      true, 10, 1, Duration.ZERO, Duration.ofMillis(200));
+    impatient.start();
+    try {
+      CashCardGroupCommitter.Pending late = impatient.submit(new CashCard(null, 1.0, "Sarah"));
+      assertThat(stuck.committing.await(10, TimeUnit.SECONDS)).isTrue();
+      CashCardGroupCommitter.Pending queued = impatient.submit(new CashCard(null, 2.0, "Sarah"));
+      assertThat(impatient.await(queued)).isNull();
+
+      CompletableFuture<CashCard> lateAnswer = CompletableFuture.supplyAsync(() -> impatient.await(late));
+      assertThatThrownBy(() -> lateAnswer.get(500, TimeUnit.MILLISECONDS)).isInstanceOf(TimeoutException.class);
+      stuck.release.countDown();
+      assertThat(lateAnswer.get(10, TimeUnit.SECONDS).getAmount()).isEqualTo(1.0);
+
+      /* The next create goes through, the one taken back never does */
+      assertThat(impatient.await(impatient.submit(new CashCard(null, 3.0, "Sarah"))).getAmount()).isEqualTo(3.0);
+      assertThat(stuck.committed).containsExactly(1.0, 3.0);
+      assertThat(events).extracting(event -> ((CashCardEvent) event).amount()).containsExactly(1.0, 3.0);
+    } finally {
+      stuck.release.countDown();
+      impatient.stop();
+    }
+  }
+
+  /* Commits wait for release; a CashCard without amount fails like the NOT NULL column would */
+  private static final class BlockingLedger extends CashCardLedger {
+
+    final CountDownLatch committing = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final List<Double> committed = new CopyOnWriteArrayList<>();
+    private final AtomicLong ids = new AtomicLong();
+
+    BlockingLedger() {
+      super(null, null, new StaticListableBeanFactory().getBeanProvider(PlatformTransactionManager.class));
+    }
+
+    @Override
+    List<CashCard> createAll(List<CashCard> cashCards) {
+      committing.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        throw new RejectedExecutionException(e);
+      }
+      List<CashCard> saved = new ArrayList<>();
+      for (CashCard cashCard : cashCards) {
+        if (cashCard.getAmount() == null) {
+          throw new DataIntegrityViolationException("amount is required");
+        }
+        saved.add(new CashCard(ids.incrementAndGet(), cashCard.getAmount(), cashCard.getOwner()));
+      }
+      saved.forEach(cashCard -> committed.add(cashCard.getAmount()));
+      return saved;
+    }
+  }
+}
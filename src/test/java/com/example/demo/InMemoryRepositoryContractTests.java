@@ -0,0 +1,14 @@
+package com.example.demo;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+/*
+ * The repository contract against the in-memory profile's repositories
+ */
+@SpringBootTest
+@ActiveProfiles("in-memory")
+@DirtiesContext
+class InMemoryRepositoryContractTests extends RepositoryContractTests {
+}
@@ -0,0 +1,178 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.JsonPath;
+import jakarta.persistence.EntityManagerFactory;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.context.ApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+/*
+ * The in-memory profile: the same API without JPA or H2 behind it
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "cashcard.rate-limit.enabled=false")
+@ActiveProfiles("in-memory")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class InMemoryStorageTests {
+
+  @Autowired
+  private TestRestTemplate restTemplate;
+
+  @Autowired
+  private CashCardRepository cashCardRepository;
+
+  @Autowired
+  private ApplicationContext context;
+
+  @Test
+  void shouldServeTheCashCardApiWithoutADatabase() {
+    assertThat(context.getBeanNamesForType(DataSource.class)).isEmpty();
+    assertThat(context.getBeanNamesForType(EntityManagerFactory.class)).isEmpty();
+    assertThat(cashCardRepository).isInstanceOf(InMemoryCashCardRepository.class);
+
+    ResponseEntity<URI[]> created = restTemplate
+      .withBasicAuth("Sarah", "sara123")
+      .postForEntity("/cashcards/batch", List.of(new CashCard(null, 30.00, null), new CashCard(null, 10.00, null),
+          new CashCard(null, 20.00, null), new CashCard(null, 10.00, null)), URI[].class);
+    assertThat(created.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+    URI[] locations = created.getBody();
+    restTemplate.withBasicAuth("LeudiX1", "leo123").postForEntity("/cashcards", new CashCard(null, 15.00, null), Void.class);
+
+    DocumentContext cashCard = get(locations[0].getPath());
+    assertThat(cashCard.read("$.amount", Double.class)).isEqualTo(30.00);
+    assertThat(cashCard.read("$.owner", String.class)).isEqualTo("Sarah");
+    assertThat(restTemplate.withBasicAuth("LeudiX1", "leo123").getForEntity(locations[0], String.class).getStatusCode())
+      .isEqualTo(HttpStatus.NOT_FOUND);
+
+    /* Ties of amount in id order, like every other page of the amount order */
+    List<Double> amounts = get("/cashcards?page=0&size=3").read("$[*].amount");
+    assertThat(amounts).containsExactly(10.00, 10.00, 20.00);
+    assertThat(get("/cashcards?page=1&size=3").read("$[*].amount", List.class)).containsExactly(30.00);
+    assertThat(get("/cashcards?sort=amount,desc").read("$[*].amount", List.class)).containsExactly(30.00, 20.00, 10.00, 10.00);
+    assertThat(get("/cashcards?sort=id,desc").read("$[0].amount", Double.class)).isEqualTo(10.00);
+
+    DocumentContext first = get("/cashcards?after=&size=2");
+    assertThat(first.read("$.content[*].amount", List.class)).containsExactly(10.00, 10.00);
+    String next = first.read("$.next");
+    assertThat(get(URI.create(next).getPath() + "?" + URI.create(next).getRawQuery()).read("$.content[*].amount", List.class))
+      .containsExactly(20.00, 30.00);
+    assertThat(get("/cashcards/search?minAmount=10.00&maxAmount=20.00&sort=amount,desc").read("$.content[*].amount", List.class))
+      .containsExactly(20.00, 10.00, 10.00);
+
+    ResponseEntity<Void> update = restTemplate
+      .withBasicAuth("Sarah", "sara123")
+      .exchange(locations[0], HttpMethod.PUT, new HttpEntity<>(new CashCard(null, 5.00, null)), Void.class);
+    assertThat(update.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+    assertThat(get("/cashcards?size=1").read("$[0].amount", Double.class)).isEqualTo(5.00);
+    assertThat(get(locations[0].getPath() + "/history").read("$[*].delta", List.class)).containsExactly(30.00, -25.00);
+
+    restTemplate.withBasicAuth("Sarah", "sara123").exchange(locations[1], HttpMethod.DELETE, null, Void.class);
+    assertThat(restTemplate.withBasicAuth("Sarah", "sara123").getForEntity(locations[1], String.class).getStatusCode())
+      .isEqualTo(HttpStatus.NOT_FOUND);
+    assertThat(get("/cashcards/summary").read("$.count", Integer.class)).isEqualTo(3);
+    assertThat(get("/cashcards/summary").read("$.total", Double.class)).isEqualTo(35.00);
+  }
+
+  /*
+   * Concurrent creates, updates and deletes of two owners, enough of them to split the columns into
+   * chunks: afterwards both keyset paging and offset paging return exactly what's left, in order
+   */
+  @Test
+  void shouldKeepTheColumnsOrderedUnderConcurrentWrites() throws Exception {
+    Map<Long, Double> expected = new ConcurrentHashMap<>();
+    ExecutorService writers = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<?>> done = new ArrayList<>();
+      for (int writer = 0; writer < 8; writer++) {
+        String owner = writer % 2 == 0 ? "Sarah" : "LeudiX1";
+        done.add(writers.submit(() -> {
+          ThreadLocalRandom random = ThreadLocalRandom.current();
+          List<Long> ids = new ArrayList<>();
+          for (int i = 0; i < 2_000; i++) {
+            int dice = random.nextInt(10);
+            if (ids.isEmpty() || dice < 6) {
+              CashCard saved = cashCardRepository.save(new CashCard(null, random.nextInt(100) / 4.0, owner));
+              ids.add(saved.getId());
+              expected.put(saved.getId(), saved.getAmount());
+            } else if (dice < 9) {
+              long id = ids.get(random.nextInt(ids.size()));
+              double amount = random.nextInt(100) / 4.0;
+              assertThat(cashCardRepository.updateAmountByIdAndOwner(id, owner, amount)).isEqualTo(expected.get(id));
+              expected.put(id, amount);
+            } else {
+              long id = ids.remove(random.nextInt(ids.size()));
+              assertThat(cashCardRepository.deleteByIdAndOwner(id, owner)).isEqualTo(expected.remove(id));
+            }
+          }
+        }));
+      }
+      for (Future<?> writer : done) {
+        writer.get();
+      }
+    } finally {
+      writers.shutdown();
+    }
+
+    for (String owner : List.of("Sarah", "LeudiX1")) {
+      List<CashCardView> keyset = new ArrayList<>();
+      Slice<CashCardView> slice = cashCardRepository.findFirstSliceByOwner(owner, PageRequest.ofSize(100));
+      keyset.addAll(slice.getContent());
+      while (slice.hasNext()) {
+        CashCardView last = slice.getContent().get(slice.getNumberOfElements() - 1);
+        slice = cashCardRepository.findSliceByOwnerAfter(owner, last.amount(), last.id(), PageRequest.ofSize(100));
+        keyset.addAll(slice.getContent());
+      }
+      List<CashCardView> offset = new ArrayList<>();
+      for (int page = 0; offset.size() == page * 100; page++) {
+        offset.addAll(cashCardRepository.findViewsByOwner(owner, PageRequest.of(page, 100, Sort.by("amount"))).getContent());
+      }
+      List<CashCardView> descending = new ArrayList<>();
+      for (int page = 0; descending.size() == page * 100; page++) {
+        descending.addAll(cashCardRepository.findViewsByOwner(owner, PageRequest.of(page, 100, Sort.by("amount").descending())).getContent());
+      }
+
+      List<CashCardView> owned = cashCardRepository.streamByOwner(owner).toList();
+      assertThat(owned).hasSizeGreaterThan(1_000);
+      owned.forEach(cashCard -> assertThat(cashCard.amount()).isEqualTo(expected.get(cashCard.id())));
+      List<CashCardView> ordered = owned.stream()
+        .sorted(Comparator.comparing(CashCardView::amount).thenComparing(CashCardView::id))
+        .toList();
+      assertThat(keyset).isEqualTo(ordered);
+      assertThat(offset).isEqualTo(ordered);
+      Collections.reverse(descending);
+      assertThat(descending).isEqualTo(ordered);
+    }
+    assertThat(cashCardRepository.count()).isEqualTo(expected.size());
+  }
+
+  private DocumentContext get(String uri) {
+    ResponseEntity<String> response = restTemplate.withBasicAuth("Sarah", "sara123").getForEntity(uri, String.class);
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    return JsonPath.parse(response.getBody());
+  }
+}
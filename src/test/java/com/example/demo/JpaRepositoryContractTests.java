@@ -0,0 +1,12 @@
+package com.example.demo;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+/*
+ * The repository contract against H2, through Spring Data JPA
+ */
+@SpringBootTest
+@DirtiesContext
+class JpaRepositoryContractTests extends RepositoryContractTests {
+}
@@ -0,0 +1,120 @@
+package com.example.demo;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Closed-loop HTTP load generator: a fixed number of simulated clients, each one
+ * sending its next request as soon as the previous response arrived.
+ *
+ * Requests are sent asynchronously, so thousands of clients don't need thousands
+ * of threads on the driver side. Latencies are recorded in microseconds.
+ */
+final class LoadDriver {
+
+    /* A request to send, labelled with the endpoint its latency is recorded under */
+    record Request(String endpoint, HttpRequest request) {
+    }
+
+    record Endpoint(long requests, long errors, Histogram latencies) {
+    }
+
+    record Result(String name, int clients, long requests, long errors, Duration elapsed, Histogram latencies,
+            Map<String, Endpoint> endpoints) {
+
+        double throughput() {
+            return requests * 1_000_000_000.0 / elapsed.toNanos();
+        }
+
+        double percentileMillis(double percentile) {
+            return latencies.getValueAtPercentile(percentile) / 1_000.0;
+        }
+    }
+
+    /* Latencies and counts of one endpoint, next to the ones of the whole run */
+    private static final class Recorder {
+
+        final Histogram latencies = newHistogram();
+        final LongAdder completed = new LongAdder();
+        final LongAdder errors = new LongAdder();
+
+        void record(long micros, boolean failed) {
+            latencies.recordValue(Math.min(micros, latencies.getHighestTrackableValue()));
+            completed.increment();
+            if (failed) {
+                errors.increment();
+            }
+        }
+
+        Endpoint toEndpoint() {
+            return new Endpoint(completed.sum(), errors.sum(), latencies);
+        }
+    }
+
+    private final HttpClient client;
+
+    LoadDriver(HttpClient client) {
+        this.client = client;
+    }
+
+    /*
+     * Drives clients concurrent request loops for the given duration, each loop
+     * asking requests for the request to send next
+     */
+    Result run(String name, int clients, Duration duration, Supplier<HttpRequest> requests) throws InterruptedException {
+        return runMix(name, clients, duration, () -> new Request(name, requests.get()));
+    }
+
+    /* Same, for a mix of endpoints: latencies are also reported per endpoint */
+    Result runMix(String name, int clients, Duration duration, Supplier<Request> requests) throws InterruptedException {
+        Recorder total = new Recorder();
+        Map<String, Recorder> endpoints = new ConcurrentHashMap<>();
+        CountDownLatch finished = new CountDownLatch(clients);
+
+        long start = System.nanoTime();
+        long deadline = start + duration.toNanos();
+        for (int i = 0; i < clients; i++) {
+            loop(requests, deadline, total, endpoints, finished);
+        }
+        finished.await();
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        Map<String, Endpoint> perEndpoint = new TreeMap<>();
+        endpoints.forEach((endpoint, recorder) -> perEndpoint.put(endpoint, recorder.toEndpoint()));
+        return new Result(name, clients, total.completed.sum(), total.errors.sum(), elapsed, total.latencies, perEndpoint);
+    }
+
+    private void loop(Supplier<Request> requests, long deadline, Recorder total, Map<String, Recorder> endpoints,
+            CountDownLatch finished) {
+        long sent = System.nanoTime();
+        if (sent - deadline >= 0) {
+            finished.countDown();
+            return;
+        }
+        Request request = requests.get();
+        Recorder endpoint = endpoints.computeIfAbsent(request.endpoint(), label -> new Recorder());
+        client.sendAsync(request.request(), HttpResponse.BodyHandlers.discarding()).whenCompleteAsync((response, failure) -> {
+            long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - sent);
+            boolean failed = failure != null || response.statusCode() >= 400;
+            total.record(micros, failed);
+            endpoint.record(micros, failed);
+            loop(requests, deadline, total, endpoints, finished);
+        });
+    }
+
+    private static Histogram newHistogram() {
+        return new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(1), 3);
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.demo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Fetching ids random CashCards of one owner over HTTP: one GET /cashcards/{id}
+ * per CashCard, against one multi-get request (GET /cashcards?ids=... and
+ * POST /cashcards/lookup), each of which pays HTTP Basic and a query once.
+ *
+ * The CashCardCache is off so every single lookup reaches the database, as the
+ * multi-get always does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class MultiGetBenchmark {
+
+    @Param({ "10", "100" })
+    public int ids;
+
+    private BenchmarkApplication application;
+    private RestTemplate client;
+
+    @Setup(Level.Trial)
+    public void start() {
+        application = BenchmarkApplication.start(WebApplicationType.SERVLET, "cashcard.cache.enabled=false")
+                .seed(BenchmarkApplication.OWNER, 10_000);
+        client = application.client();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        application.close();
+    }
+
+    @Benchmark
+    public List<String> individualGets() {
+        List<String> cashCards = new ArrayList<>(ids);
+        for (long id : randomIds()) {
+            cashCards.add(client.getForObject("/cashcards/{id}", String.class, id));
+        }
+        return cashCards;
+    }
+
+    @Benchmark
+    public String multiGet() {
+        String idList = randomIds().stream().map(String::valueOf).collect(Collectors.joining(","));
+        return client.getForObject("/cashcards?ids={ids}", String.class, idList);
+    }
+
+    @Benchmark
+    public String lookup() {
+        return client.postForObject("/cashcards/lookup", randomIds(), String.class);
+    }
+
+    private List<Long> randomIds() {
+        List<Long> randomIds = new ArrayList<>(ids);
+        for (int i = 0; i < ids; i++) {
+            randomIds.add(application.randomId());
+        }
+        return randomIds;
+    }
+}
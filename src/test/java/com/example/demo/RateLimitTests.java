@@ -0,0 +1,87 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+
+/*
+ * Tiny budgets refilled once a minute, so the buckets only ever drain while a test runs
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+  "cashcard.rate-limit.read.capacity=3",
+  "cashcard.rate-limit.read.per-second=0.0166",
+  "cashcard.rate-limit.write.capacity=2",
+  "cashcard.rate-limit.write.per-second=0.0166"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class RateLimitTests {
+
+  @Autowired
+  private TestRestTemplate restTemplate;
+
+  /*
+   * Reads past the read budget are answered 429 TOO MANY REQUESTS with Retry-After, while writes still have their own budget
+   */
+  @Test
+  void shouldRejectReadsOverBudgetWithRetryAfter() {
+    for (int i = 0; i < 3; i++) {
+      ResponseEntity<String> response = restTemplate.withBasicAuth("LeudiX1", "leo123").getForEntity("/cashcards", String.class);
+      assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    ResponseEntity<String> overBudget = restTemplate.withBasicAuth("LeudiX1", "leo123").getForEntity("/cashcards", String.class);
+    assertThat(overBudget.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+    assertThat(Long.parseLong(overBudget.getHeaders().getFirst("Retry-After"))).isPositive();
+
+    ResponseEntity<Void> write = restTemplate
+      .withBasicAuth("LeudiX1", "leo123")
+      .postForEntity("/cashcards", new CashCard(null, 10.0, null), Void.class);
+    assertThat(write.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+  }
+
+  /*
+   * Budgets are per user: one user running out of requests doesn't affect another one
+   */
+  @Test
+  void shouldKeepSeparateBudgetsPerUser() {
+    for (int i = 0; i < 2; i++) {
+      restTemplate.withBasicAuth("LeudiX1", "leo123").postForEntity("/cashcards", new CashCard(null, 10.0, null), Void.class);
+    }
+    ResponseEntity<Void> overBudget = restTemplate
+      .withBasicAuth("LeudiX1", "leo123")
+      .postForEntity("/cashcards", new CashCard(null, 10.0, null), Void.class);
+    assertThat(overBudget.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+
+    ResponseEntity<Void> otherUser = restTemplate
+      .withBasicAuth("Sarah", "sara123")
+      .postForEntity("/cashcards", new CashCard(null, 10.0, null), Void.class);
+    assertThat(otherUser.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+  }
+
+  /*
+   * A multi-get through POST /cashcards/lookup only reads, it draws on the read budget and leaves the write budget alone
+   */
+  @Test
+  void shouldCountLookupsAsReads() {
+    for (int i = 0; i < 3; i++) {
+      ResponseEntity<String> lookup = restTemplate
+        .withBasicAuth("LeudiX1", "leo123")
+        .postForEntity("/cashcards/lookup", List.of(1L, 2L), String.class);
+      assertThat(lookup.getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+    ResponseEntity<String> overBudget = restTemplate.withBasicAuth("LeudiX1", "leo123").getForEntity("/cashcards", String.class);
+    assertThat(overBudget.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+
+    ResponseEntity<Void> write = restTemplate
+      .withBasicAuth("LeudiX1", "leo123")
+      .postForEntity("/cashcards", new CashCard(null, 10.0, null), Void.class);
+    assertThat(write.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+  }
+}
@@ -0,0 +1,70 @@
+package com.example.demo;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+/**
+ * Managed entities versus read-only CashCardView projections for the two GET
+ * read paths. Meant to be run with the GC profiler, which reports allocated
+ * bytes per operation (gc.alloc.rate.norm):
+ * -Djmh.args="ReadPathAllocationBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class ReadPathAllocationBenchmark {
+
+    @Param({ "20", "200" })
+    public int pageSize;
+
+    private BenchmarkApplication application;
+    private CashCardRepository repository;
+    private Pageable page;
+
+    @Setup(Level.Trial)
+    public void start() {
+        application = BenchmarkApplication.start(WebApplicationType.SERVLET)
+                .seed(BenchmarkApplication.OWNER, 10_000);
+        repository = application.repository();
+        page = PageRequest.of(0, pageSize, Sort.by(Sort.Direction.ASC, "amount"));
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        application.close();
+    }
+
+    @Benchmark
+    public Object singleEntity() {
+        return repository.findByIdAndOwner(application.randomId(), BenchmarkApplication.OWNER);
+    }
+
+    @Benchmark
+    public Object singleView() {
+        return repository.findViewByIdAndOwner(application.randomId(), BenchmarkApplication.OWNER);
+    }
+
+    @Benchmark
+    public Object pageOfEntities() {
+        return repository.findByOwner(BenchmarkApplication.OWNER, page).getContent();
+    }
+
+    @Benchmark
+    public Object pageOfViews() {
+        return repository.findViewsByOwner(BenchmarkApplication.OWNER, page).getContent();
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.jayway.jsonpath.JsonPath;
+import java.net.URI;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import net.minidev.json.JSONArray;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+
+/*
+ * Two H2 instances, the second one acting as the read replica. There is no replication between them:
+ * replicate() copies the primary over, so until it's called the replica lags behind.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+  "spring.datasource.url=" + ReadReplicaTests.PRIMARY_URL,
+  "cashcard.datasource.replicas[0].url=" + ReadReplicaTests.REPLICA_URL,
+  "cashcard.datasource.read-your-writes=1h",
+  "cashcard.cache.enabled=false"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class ReadReplicaTests {
+
+  static final String PRIMARY_URL = "jdbc:h2:mem:replicated-primary;DB_CLOSE_DELAY=-1";
+  static final String REPLICA_URL = "jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1";
+
+  @Autowired
+  private TestRestTemplate restTemplate;
+
+  @BeforeEach
+  void setUp() throws SQLException {
+    replicate();
+  }
+
+  /*
+   * Reads run on the replica: a CashCard written to the primary behind the API's back only shows up once replicated
+   */
+  @Test
+  void shouldReadFromTheReplica() throws SQLException {
+    try (Connection primary = DriverManager.getConnection(PRIMARY_URL, "sa", "");
+        Statement statement = primary.createStatement()) {
+      statement.executeUpdate("insert into cash_card (id, amount, owner) values (next value for cash_card_seq, 777.77, 'LeudiX1')");
+    }
+    assertThat(amountsOf("LeudiX1", "leo123")).doesNotContain(777.77);
+
+    replicate();
+    assertThat(amountsOf("LeudiX1", "leo123")).contains(777.77);
+  }
+
+  /*
+   * Writes go to the primary, and their author reads them back from there even though the replica hasn't caught up
+   */
+  @Test
+  void shouldReadYourOwnWritesFromThePrimary() {
+    ResponseEntity<Void> created = restTemplate
+      .withBasicAuth("Sarah", "sara123")
+      .postForEntity("/cashcards", new CashCard(null, 55.55, null), Void.class);
+    assertThat(created.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+
+    URI location = created.getHeaders().getLocation();
+    ResponseEntity<String> response = restTemplate.withBasicAuth("Sarah", "sara123").getForEntity(location, String.class);
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    Double amount = JsonPath.parse(response.getBody()).read("$.amount");
+    assertThat(amount).isEqualTo(55.55);
+  }
+
+  /*
+   * A read from the lagging replica gets no ETag: it would keep answering 304 to the stale body. Revalidations
+   * read from the primary, and their ETag holds until the owner's next write
+   */
+  @Test
+  void shouldOnlyGiveETagsForReadsFromThePrimary() throws SQLException {
+    try (Connection primary = DriverManager.getConnection(PRIMARY_URL, "sa", "");
+        Statement statement = primary.createStatement()) {
+      statement.executeUpdate("insert into cash_card (id, amount, owner) values (next value for cash_card_seq, 777.77, 'LeudiX1')");
+    }
+    ResponseEntity<String> fromReplica = restTemplate.withBasicAuth("LeudiX1", "leo123").getForEntity("/cashcards?size=1000", String.class);
+    assertThat(fromReplica.getStatusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(JsonPath.parse(fromReplica.getBody()).read("$[*].amount", JSONArray.class)).doesNotContain(777.77);
+    assertThat(fromReplica.getHeaders().getETag()).isNull();
+
+    ResponseEntity<String> fromPrimary = conditionalGet("\"unknown\"");
+    assertThat(fromPrimary.getStatusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(JsonPath.parse(fromPrimary.getBody()).read("$[*].amount", JSONArray.class)).contains(777.77);
+    String eTag = fromPrimary.getHeaders().getETag();
+    assertThat(eTag).isNotNull();
+    assertThat(conditionalGet(eTag).getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+  }
+
+  private ResponseEntity<String> conditionalGet(String eTag) {
+    HttpHeaders headers = new HttpHeaders();
+    headers.setIfNoneMatch(eTag);
+    return restTemplate.withBasicAuth("LeudiX1", "leo123")
+      .exchange("/cashcards?size=1000", HttpMethod.GET, new HttpEntity<>(headers), String.class);
+  }
+
+  private JSONArray amountsOf(String username, String password) {
+    ResponseEntity<String> response = restTemplate.withBasicAuth(username, password).getForEntity("/cashcards?size=1000", String.class);
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    return JsonPath.parse(response.getBody()).read("$[*].amount");
+  }
+
+  /* Replaces everything in the replica with a copy of the primary */
+  private static void replicate() throws SQLException {
+    try (Connection primary = DriverManager.getConnection(PRIMARY_URL, "sa", "");
+        Connection replica = DriverManager.getConnection(REPLICA_URL, "sa", "");
+        Statement source = primary.createStatement();
+        Statement target = replica.createStatement()) {
+      target.execute("drop all objects");
+      try (ResultSet script = source.executeQuery("script")) {
+        while (script.next()) {
+          target.execute(script.getString(1));
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+
+/*
+ * What CashCardLedger and the controller count on from the repositories, whichever storage is behind them:
+ * run by JpaRepositoryContractTests and InMemoryRepositoryContractTests. Each test uses its own owner
+ */
+abstract class RepositoryContractTests {
+
+  @Autowired
+  private CashCardRepository cashCardRepository;
+
+  @Autowired
+  private CashCardLedgerRepository ledgerRepository;
+
+  /*
+   * Owner-checked writes return the amount they replaced, null (and nothing written) for someone else's CashCard
+   */
+  @Test
+  void shouldWriteOnlyTheOwnersCashCardsAndReturnTheReplacedAmount() {
+    long id = cashCardRepository.save(new CashCard(null, 10.0, "ContractWriter")).getId();
+
+    assertThat(cashCardRepository.updateAmountByIdAndOwner(id, "SomeoneElse", 99.0)).isNull();
+    assertThat(cashCardRepository.updateAmountByIdAndOwner(id, "ContractWriter", 12.5)).isEqualTo(10.0);
+    assertThat(cashCardRepository.findViewByIdAndOwner(id, "ContractWriter").amount()).isEqualTo(12.5);
+    assertThat(cashCardRepository.findViewByIdAndOwner(id, "SomeoneElse")).isNull();
+
+    assertThat(cashCardRepository.deleteByIdAndOwner(id, "SomeoneElse")).isNull();
+    assertThat(cashCardRepository.existsByIdAndOwner(id, "ContractWriter")).isTrue();
+    assertThat(cashCardRepository.deleteByIdAndOwner(id, "ContractWriter")).isEqualTo(12.5);
+    assertThat(cashCardRepository.existsByIdAndOwner(id, "ContractWriter")).isFalse();
+    assertThat(cashCardRepository.updateAmountByIdAndOwner(id, "ContractWriter", 1.0)).isNull();
+    assertThat(cashCardRepository.deleteByIdAndOwner(id, "ContractWriter")).isNull();
+  }
+
+  /*
+   * A CashCard's entries come back in sequence order, in slices after a sequence, and only to its owner
+   */
+  @Test
+  void shouldReadTheHistoryInSequenceOrderAfterASequence() {
+    assertThat(ledgerRepository.findLastSequence("ContractHistory", 1)).isZero();
+    assertThat(ledgerRepository.existsByOwnerAndCardId("ContractHistory", 1L)).isFalse();
+    for (long sequence = 1; sequence <= 5; sequence++) {
+      ledgerRepository.save(entry(1, sequence, "ContractHistory", BigDecimal.valueOf(sequence * 10)));
+    }
+    ledgerRepository.save(entry(2, 1, "ContractHistory", BigDecimal.ONE));
+
+    assertThat(ledgerRepository.findLastSequence("ContractHistory", 1)).isEqualTo(5);
+    assertThat(ledgerRepository.existsByOwnerAndCardId("ContractHistory", 1L)).isTrue();
+    assertThat(ledgerRepository.existsByOwnerAndCardId("SomeoneElse", 1L)).isFalse();
+
+    Slice<LedgerEntryView> first = ledgerRepository.findHistory("ContractHistory", 1, 0, PageRequest.ofSize(2));
+    assertThat(first.getContent()).extracting(LedgerEntryView::sequence).containsExactly(1L, 2L);
+    assertThat(first.hasNext()).isTrue();
+    Slice<LedgerEntryView> last = ledgerRepository.findHistory("ContractHistory", 1, 3, PageRequest.ofSize(2));
+    assertThat(last.getContent()).extracting(LedgerEntryView::delta).containsExactly(new BigDecimal("40.0"), new BigDecimal("50.0"));
+    assertThat(last.hasNext()).isFalse();
+    assertThat(ledgerRepository.findHistory("SomeoneElse", 1, 0, PageRequest.ofSize(10))).isEmpty();
+  }
+
+  /*
+   * Saving an entry that already has an id replaces the stored one, like a JPA merge: no second entry
+   */
+  @Test
+  void shouldReplaceAnEntrySavedAgainWithItsId() {
+    CashCardLedgerEntry saved = ledgerRepository.save(entry(7, 1, "ContractReplace", new BigDecimal("1.5")));
+    long count = ledgerRepository.count();
+
+    CashCardLedgerEntry replaced = ledgerRepository.save(new CashCardLedgerEntry(saved.getId(), 7L, 1L, "ContractReplace",
+        new BigDecimal("2.25"), saved.getRecordedAt()));
+    assertThat(replaced.getId()).isEqualTo(saved.getId());
+    assertThat(ledgerRepository.count()).isEqualTo(count);
+    assertThat(ledgerRepository.findById(saved.getId()).orElseThrow().getDelta()).isEqualByComparingTo("2.25");
+    List<LedgerEntryView> history = ledgerRepository.findHistory("ContractReplace", 7, 0, PageRequest.ofSize(10)).getContent();
+    assertThat(history).extracting(LedgerEntryView::sequence).containsExactly(1L);
+    assertThat(history.get(0).delta()).isEqualByComparingTo("2.25");
+  }
+
+  private static CashCardLedgerEntry entry(long cardId, long sequence, String owner, BigDecimal delta) {
+    return new CashCardLedgerEntry(cardId, sequence, owner, delta, Instant.now());
+  }
+}
@@ -0,0 +1,110 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.jayway.jsonpath.JsonPath;
+import jakarta.persistence.EntityManagerFactory;
+import java.net.URI;
+import net.minidev.json.JSONArray;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/*
+ * The CashCardCache is off, so single lookups reach Hibernate and its caches
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+  "cashcard.l2-cache.enabled=true",
+  "cashcard.cache.enabled=false",
+  "cashcard.rate-limit.enabled=false"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class SecondLevelCacheTests {
+
+  @Autowired
+  private TestRestTemplate restTemplate;
+
+  @Autowired
+  private EntityManagerFactory entityManagerFactory;
+
+  @Autowired
+  private CashCardRepository cashCardRepository;
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  /*
+   * A repeated lookup is answered from the query cache without a statement, and neither an update
+   * nor a delete (native statements Hibernate can't see through) leave a stale result behind
+   */
+  @Test
+  void shouldServeRepeatedLookupsFromTheQueryCacheAndInvalidateThemOnWrites() {
+    URI location = restTemplate
+      .withBasicAuth("Sarah", "sara123")
+      .postForEntity("/cashcards", new CashCard(null, 10.00, null), Void.class)
+      .getHeaders()
+      .getLocation();
+    Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+    assertThat(amountAt(location)).isEqualTo(10.00);
+    long statements = statistics.getPrepareStatementCount();
+    long hits = statistics.getQueryCacheHitCount();
+    assertThat(amountAt(location)).isEqualTo(10.00);
+    assertThat(statistics.getPrepareStatementCount()).isEqualTo(statements);
+    assertThat(statistics.getQueryCacheHitCount()).isEqualTo(hits + 1);
+
+    ResponseEntity<Void> update = restTemplate
+      .withBasicAuth("Sarah", "sara123")
+      .exchange(location, HttpMethod.PUT, new HttpEntity<>(new CashCard(null, 20.00, null)), Void.class);
+    assertThat(update.getStatusCode()).isEqualTo(HttpStatus.NO_CONTENT);
+    assertThat(amountAt(location)).isEqualTo(20.00);
+    long id = Long.parseLong(location.getPath().substring(location.getPath().lastIndexOf('/') + 1));
+    assertThat(cashCardRepository.findByIdAndOwner(id, "Sarah").getAmount()).isEqualTo(20.00);
+
+    restTemplate.withBasicAuth("Sarah", "sara123").exchange(location, HttpMethod.DELETE, null, Void.class);
+    ResponseEntity<String> deleted = restTemplate.withBasicAuth("Sarah", "sara123").getForEntity(location, String.class);
+    assertThat(deleted.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    assertThat(cashCardRepository.findByIdAndOwner(id, "Sarah")).isNull();
+  }
+
+  /*
+   * A cached list picks up a new CashCard, and region statistics are published per region
+   */
+  @Test
+  void shouldInvalidateCachedListsOnCreateAndPublishRegionStatistics() {
+    restTemplate.withBasicAuth("Sarah", "sara123").postForEntity("/cashcards", new CashCard(null, 30.00, null), Void.class);
+    assertThat(amountsOf()).contains(30.00).doesNotContain(40.00);
+    assertThat(amountsOf()).contains(30.00).doesNotContain(40.00);
+
+    restTemplate.withBasicAuth("Sarah", "sara123").postForEntity("/cashcards", new CashCard(null, 40.00, null), Void.class);
+    assertThat(amountsOf()).contains(30.00, 40.00);
+
+    Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    assertThat(statistics.getQueryCacheHitCount()).isPositive();
+    assertThat(statistics.getDomainDataRegionStatistics(SecondLevelCacheConfig.CASH_CARD_REGION).getPutCount()).isPositive();
+    assertThat(meterRegistry.find("hibernate.second.level.cache.requests").tag("region", SecondLevelCacheConfig.CASH_CARD_REGION).meters())
+      .isNotEmpty();
+  }
+
+  private Double amountAt(URI location) {
+    ResponseEntity<String> response = restTemplate.withBasicAuth("Sarah", "sara123").getForEntity(location, String.class);
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    return JsonPath.parse(response.getBody()).read("$.amount", Double.class);
+  }
+
+  private JSONArray amountsOf() {
+    ResponseEntity<String> response = restTemplate.withBasicAuth("Sarah", "sara123").getForEntity("/cashcards?size=1000", String.class);
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    return JsonPath.parse(response.getBody()).read("$[*].amount");
+  }
+}
@@ -0,0 +1,169 @@
+package com.example.demo;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Compares GET /cashcards/{id} of this (servlet, JPA) application with the
+ * WebFlux + R2DBC application of the reactive module at increasing numbers of
+ * concurrent clients: throughput, latency, and what the concurrency costs the
+ * server in threads and resident memory.
+ *
+ * Both run in their own JVM with the same options, started fresh for every row,
+ * and are sampled through /proc, so this only runs on Linux. Build the reactive
+ * application first, then run with:
+ * (cd reactive && ../mvnw package -DskipTests)
+ * ./mvnw test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.demo.ServletReactiveLoadComparison
+ * Optional system properties: clients (default 100,1000,10000), seconds (default 20), cards (default 200),
+ * jvm.options (default -Xms256m -Xmx1g), reactive.jar (default reactive/target/cashcard-reactive-0.0.1-SNAPSHOT.jar).
+ */
+public class ServletReactiveLoadComparison {
+
+    private record Row(LoadDriver.Result result, long idleThreads, long peakThreads, long idleRssKb, long peakRssKb) {
+
+        /* Resident memory the load added, per concurrent client (one connection each) */
+        double kbPerClient() {
+            return (double) (peakRssKb - idleRssKb) / result.clients();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] clientCounts = parse(System.getProperty("clients", "100,1000,10000"));
+        Duration duration = Duration.ofSeconds(Long.getLong("seconds", 20));
+        int cards = Integer.getInteger("cards", 200);
+        List<String> jvmOptions = List.of(System.getProperty("jvm.options", "-Xms256m -Xmx1g").split(" "));
+        Path reactiveJar = Path.of(System.getProperty("reactive.jar", "reactive/target/cashcard-reactive-0.0.1-SNAPSHOT.jar"));
+        if (!Files.exists(reactiveJar)) {
+            throw new IllegalStateException(reactiveJar + " not found, build it with: (cd reactive && ../mvnw package -DskipTests)");
+        }
+
+        List<Row> rows = new ArrayList<>();
+        for (String runtime : new String[] { "servlet", "reactive" }) {
+            for (int clients : clientCounts) {
+                int port = ServerProcess.freePort();
+                List<String> command = new ArrayList<>();
+                command.add(ServerProcess.java());
+                command.addAll(jvmOptions);
+                if (runtime.equals("servlet")) {
+                    command.addAll(List.of("-cp", ServerProcess.classPath(), CashcardApplication.class.getName(),
+                            "--spring.threads.virtual.enabled=false",
+                            "--cashcard.cache.enabled=false", /* the reactive application has neither a CashCardCache */
+                            "--cashcard.rate-limit.enabled=false", /* nor rate limits */
+                            "--server.tomcat.max-connections=20000",
+                            "--server.tomcat.accept-count=1000"));
+                } else {
+                    command.addAll(List.of("-jar", reactiveJar.toString()));
+                }
+                command.addAll(List.of("--server.port=" + port, "--logging.level.root=WARN", "--spring.main.banner-mode=off"));
+                rows.add(measure(runtime, new ProcessBuilder(command).inheritIO().start(), port, clients, duration, cards));
+            }
+        }
+
+        System.out.printf("%n%-10s %8s %12s %10s %10s %8s %10s %12s %8s%n", "runtime", "clients", "requests/s", "p50 ms", "p99 ms",
+                "errors", "threads", "rss MB", "KB/client");
+        for (Row row : rows) {
+            LoadDriver.Result result = row.result();
+            System.out.printf("%-10s %8d %12.1f %10.2f %10.2f %8d %4d->%-5d %5d->%-6d %8.1f%n", result.name(), result.clients(),
+                    result.throughput(), result.percentileMillis(50), result.percentileMillis(99), result.errors(),
+                    row.idleThreads(), row.peakThreads(), row.idleRssKb() / 1024, row.peakRssKb() / 1024, row.kbPerClient());
+        }
+    }
+
+    private static Row measure(String runtime, Process server, int port, int clients, Duration duration, int cards) throws Exception {
+        try {
+            String authorization = "Basic " + Base64.getEncoder().encodeToString(
+                    (BenchmarkApplication.OWNER + ":" + BenchmarkApplication.PASSWORD).getBytes(StandardCharsets.UTF_8));
+            HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(30)).build();
+            awaitStartup(client, port, server);
+            List<Long> ids = seed(client, port, authorization, cards);
+
+            LoadDriver driver = new LoadDriver(client);
+            driver.run("warm-up", Math.min(clients, 100), Duration.ofSeconds(5), () -> findById(port, authorization, ids));
+            long idleThreads = ServerProcess.status(server, "Threads:");
+            long idleRssKb = ServerProcess.status(server, "VmRSS:");
+
+            long[] peaks = { idleThreads, idleRssKb };
+            Thread sampler = new Thread(() -> {
+                while (!Thread.currentThread().isInterrupted()) {
+                    peaks[0] = Math.max(peaks[0], ServerProcess.status(server, "Threads:"));
+                    peaks[1] = Math.max(peaks[1], ServerProcess.status(server, "VmRSS:"));
+                    try {
+                        Thread.sleep(100);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            });
+            sampler.setDaemon(true);
+            sampler.start();
+            LoadDriver.Result result = driver.run(runtime, clients, duration, () -> findById(port, authorization, ids));
+            sampler.interrupt();
+            sampler.join();
+            return new Row(result, idleThreads, peaks[0], idleRssKb, peaks[1]);
+        } finally {
+            ServerProcess.stop(server);
+        }
+    }
+
+    private static void awaitStartup(HttpClient client, int port, Process server) throws Exception {
+        HttpRequest health = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/actuator/health")).build();
+        for (long deadline = System.nanoTime() + Duration.ofMinutes(2).toNanos(); System.nanoTime() < deadline; Thread.sleep(200)) {
+            if (!server.isAlive()) {
+                throw new IllegalStateException("Server exited with " + server.exitValue());
+            }
+            try {
+                if (client.send(health, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException notListeningYet) {
+                // retry
+            }
+        }
+        throw new IllegalStateException("Server didn't start on port " + port);
+    }
+
+    /* Creates cards CashCards through the API, both runtimes start with an empty database */
+    private static List<Long> seed(HttpClient client, int port, String authorization, int cards) throws Exception {
+        List<Long> ids = new ArrayList<>(cards);
+        for (int i = 0; i < cards; i++) {
+            HttpRequest create = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/cashcards"))
+                    .header("Authorization", authorization)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"amount\": " + (i + 1) + ".25}"))
+                    .build();
+            HttpResponse<Void> response = client.send(create, HttpResponse.BodyHandlers.discarding());
+            String location = response.headers().firstValue("Location").orElseThrow(
+                    () -> new IllegalStateException("Seeding failed with " + response.statusCode()));
+            ids.add(Long.parseLong(location.substring(location.lastIndexOf('/') + 1)));
+        }
+        return ids;
+    }
+
+    private static HttpRequest findById(int port, String authorization, List<Long> ids) {
+        long id = ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/cashcards/" + id))
+                .header("Authorization", authorization)
+                .timeout(Duration.ofSeconds(60))
+                .build();
+    }
+
+    private static int[] parse(String values) {
+        String[] parts = values.split(",");
+        int[] parsed = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            parsed[i] = Integer.parseInt(parts[i].trim());
+        }
+        return parsed;
+    }
+}
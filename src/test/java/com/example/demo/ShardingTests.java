@@ -0,0 +1,194 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.jayway.jsonpath.JsonPath;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+
+/*
+ * Two H2 instances as shards, the buckets spread evenly: Sarah's CashCards live on the first, LeudiX1's on the second
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+  "cashcard.datasource.shards[0].url=" + ShardingTests.SHARD_0_URL,
+  "cashcard.datasource.shards[1].url=" + ShardingTests.SHARD_1_URL,
+  "cashcard.cache.enabled=false",
+  "cashcard.rate-limit.enabled=false"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class ShardingTests {
+
+  static final String SHARD_0_URL = "jdbc:h2:mem:shard0;DB_CLOSE_DELAY=-1";
+  static final String SHARD_1_URL = "jdbc:h2:mem:shard1;DB_CLOSE_DELAY=-1";
+  static final String SHARD_2_URL = "jdbc:h2:mem:shard2;DB_CLOSE_DELAY=-1";
+
+  @Autowired
+  private TestRestTemplate restTemplate;
+
+  /*
+   * Every CashCard is written to its owner's shard only, its id names the owner's bucket,
+   * and the owner reads it back through the API
+   */
+  @Test
+  void shouldKeepEveryOwnersCashCardsOnTheirShard() throws SQLException {
+    URI sarahs = create("Sarah", "sara123", 12.5);
+    URI leudix1s = create("LeudiX1", "leo123", 250.0);
+
+    assertThat(ids(SHARD_0_URL, "Sarah")).containsExactly(idOf(sarahs));
+    assertThat(ids(SHARD_1_URL, "LeudiX1")).containsExactly(idOf(leudix1s));
+    assertThat(ids(SHARD_0_URL, "LeudiX1")).isEmpty();
+    assertThat(ids(SHARD_1_URL, "Sarah")).isEmpty();
+    assertThat(CashCardShards.bucketOf(idOf(sarahs))).isEqualTo(CashCardShards.bucketOf("Sarah"));
+    assertThat(CashCardShards.bucketOf(idOf(leudix1s))).isEqualTo(CashCardShards.bucketOf("LeudiX1"));
+
+    ResponseEntity<String> response = restTemplate.withBasicAuth("LeudiX1", "leo123").getForEntity(leudix1s, String.class);
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    Double amount = JsonPath.parse(response.getBody()).read("$.amount");
+    assertThat(amount).isEqualTo(250.0);
+
+    response = restTemplate.withBasicAuth("Sarah", "sara123").getForEntity(leudix1s, String.class);
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+  }
+
+  /*
+   * Past the first block of pooled ids, each shard keeps drawing from its own sequence: alternating
+   * creates of both owners get positive, distinct ids, all of them with their ledger entry
+   */
+  @Test
+  void shouldDrawEveryShardsIdsFromItsOwnSequence() throws SQLException {
+    List<Long> sarahs = new ArrayList<>();
+    List<Long> leudix1s = new ArrayList<>();
+    for (int i = 0; i < 120; i++) {
+      sarahs.add(idOf(create("Sarah", "sara123", i)));
+      leudix1s.add(idOf(create("LeudiX1", "leo123", i)));
+    }
+
+    assertThat(ids(SHARD_0_URL, "Sarah")).containsExactlyInAnyOrderElementsOf(sarahs);
+    assertThat(ids(SHARD_1_URL, "LeudiX1")).containsExactlyInAnyOrderElementsOf(leudix1s);
+    assertThat(sarahs).allMatch(id -> id > 0).doesNotHaveDuplicates().isSorted();
+    assertThat(leudix1s).allMatch(id -> id > 0).doesNotHaveDuplicates().isSorted();
+    assertThat(ledgerEntries(SHARD_0_URL, "Sarah")).isEqualTo(120);
+    assertThat(ledgerEntries(SHARD_1_URL, "LeudiX1")).isEqualTo(120);
+  }
+
+  /*
+   * Rebalancing onto a third shard moves both owners (Sarah to the second shard, LeudiX1 to the third)
+   * with their ids and ledgers, and leaves nothing to do when run again
+   */
+  @Test
+  void shouldRebalanceOwnersOntoANewShard() throws SQLException {
+    long sarahs = idOf(create("Sarah", "sara123", 12.5));
+    long leudix1s = idOf(create("LeudiX1", "leo123", 250.0));
+    copySchema(SHARD_0_URL, SHARD_2_URL);
+
+    List<Connection> shards = new ArrayList<>();
+    try {
+      for (String url : List.of(SHARD_0_URL, SHARD_1_URL, SHARD_2_URL)) {
+        shards.add(DriverManager.getConnection(url, "sa", ""));
+      }
+      assertThat(CashCardShardRebalancer.rebalance(shards, ShardMap.evenly(3))).isEqualTo(2);
+      assertThat(CashCardShardRebalancer.rebalance(shards, ShardMap.evenly(3))).isZero();
+    } finally {
+      for (Connection shard : shards) {
+        shard.close();
+      }
+    }
+
+    /* From the urls, as the command line runs it: nothing left to move, the configuration is all it writes */
+    ByteArrayOutputStream configuration = new ByteArrayOutputStream();
+    CashCardShardRebalancer.rebalance(List.of(SHARD_0_URL, SHARD_1_URL, SHARD_2_URL), "sa", "", ShardMap.evenly(3),
+      new PrintStream(configuration, true, StandardCharsets.UTF_8));
+    assertThat(configuration.toString(StandardCharsets.UTF_8).lines())
+      .hasSize(7)
+      .startsWith("# Moved 0 CashCards")
+      .contains("cashcard.datasource.shards[2].url=" + SHARD_2_URL);
+
+    assertThat(ids(SHARD_0_URL, "Sarah")).isEmpty();
+    assertThat(ids(SHARD_1_URL, "Sarah")).containsExactly(sarahs);
+    assertThat(ids(SHARD_1_URL, "LeudiX1")).isEmpty();
+    assertThat(ids(SHARD_2_URL, "LeudiX1")).containsExactly(leudix1s);
+    assertThat(ledgerEntries(SHARD_1_URL, "LeudiX1")).isZero();
+    assertThat(ledgerEntries(SHARD_2_URL, "LeudiX1")).isEqualTo(1);
+    /* The third shard's ids continue past the ones it took over */
+    assertThat(CashCardShards.id(nextSequenceValue(SHARD_2_URL), 0)).isGreaterThan(leudix1s);
+  }
+
+  private URI create(String username, String password, double amount) {
+    ResponseEntity<Void> created = restTemplate
+      .withBasicAuth(username, password)
+      .postForEntity("/cashcards", new CashCard(null, amount, null), Void.class);
+    assertThat(created.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+    return created.getHeaders().getLocation();
+  }
+
+  private static long idOf(URI location) {
+    String path = location.getPath();
+    return Long.parseLong(path.substring(path.lastIndexOf('/') + 1));
+  }
+
+  private static List<Long> ids(String url, String owner) throws SQLException {
+    try (Connection shard = DriverManager.getConnection(url, "sa", "");
+        PreparedStatement select = shard.prepareStatement("select id from cash_card where owner = ?")) {
+      select.setString(1, owner);
+      List<Long> ids = new ArrayList<>();
+      try (ResultSet rows = select.executeQuery()) {
+        while (rows.next()) {
+          ids.add(rows.getLong(1));
+        }
+      }
+      return ids;
+    }
+  }
+
+  private static long ledgerEntries(String url, String owner) throws SQLException {
+    try (Connection shard = DriverManager.getConnection(url, "sa", "");
+        PreparedStatement count = shard.prepareStatement("select count(*) from cash_card_ledger where owner = ?")) {
+      count.setString(1, owner);
+      try (ResultSet rows = count.executeQuery()) {
+        rows.next();
+        return rows.getLong(1);
+      }
+    }
+  }
+
+  private static long nextSequenceValue(String url) throws SQLException {
+    try (Connection shard = DriverManager.getConnection(url, "sa", "");
+        Statement statement = shard.createStatement();
+        ResultSet next = statement.executeQuery("select next value for cash_card_seq")) {
+      next.next();
+      return next.getLong(1);
+    }
+  }
+
+  /* A new, empty shard with the tables and sequences of an existing one */
+  private static void copySchema(String from, String to) throws SQLException {
+    try (Connection source = DriverManager.getConnection(from, "sa", "");
+        Connection target = DriverManager.getConnection(to, "sa", "");
+        Statement script = source.createStatement();
+        Statement statement = target.createStatement()) {
+      statement.execute("drop all objects");
+      try (ResultSet ddl = script.executeQuery("script nodata")) {
+        while (ddl.next()) {
+          statement.execute(ddl.getString(1));
+        }
+      }
+    }
+  }
+}
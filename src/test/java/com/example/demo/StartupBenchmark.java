@@ -0,0 +1,123 @@
+package com.example.demo;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cold start of CashcardApplication in each startup mode: time from launching
+ * the process to the first answered GET /cashcards/{id}, and the resident memory
+ * of the process at that point.
+ *
+ * The database starts empty, so that first answer is a 404 from the controller:
+ * it still took the whole request path (security, BCrypt, JPA query). Modes:
+ * - jar: the executable jar
+ * - classpath: the plain jar plus target/lib, no AOT
+ * - aot: the same with the AOT-processed context (-Dspring.aot.enabled=true)
+ * - aot+cds: the same with the CDS archive of the training run
+ * - native: the GraalVM native executable, when target/cashcard exists
+ * Every mode runs several times, the table shows the median.
+ *
+ * RSS is read from /proc, so this only runs on Linux. Build the fast-startup
+ * profile first (and optionally the native image), then run with:
+ * ./mvnw clean -Pfast-startup package -DskipTests
+ * ./mvnw test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.demo.StartupBenchmark
+ * Optional system properties: runs (default 5), jvm.options (default -Xms256m -Xmx1g).
+ */
+public class StartupBenchmark {
+
+    private record Run(long millis, long rssKb) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int runs = Integer.getInteger("runs", 5);
+        List<String> jvmOptions = List.of(System.getProperty("jvm.options", "-Xms256m -Xmx1g").split(" "));
+
+        Path target = Path.of("target");
+        Path executableJar = target.resolve("cashcard-0.0.1-SNAPSHOT-exec.jar");
+        Path cdsArchive = target.resolve("cashcard.jsa");
+        if (!Files.exists(executableJar) || !Files.exists(cdsArchive)) {
+            throw new IllegalStateException("Build the fast-startup profile first: ./mvnw clean -Pfast-startup package -DskipTests");
+        }
+        String classPath = target.resolve("cashcard-0.0.1-SNAPSHOT.jar") + File.pathSeparator + target.resolve("lib") + File.separator + "*";
+        String main = CashcardApplication.class.getName();
+
+        Map<String, List<String>> modes = new LinkedHashMap<>();
+        modes.put("jar", java(jvmOptions, "-jar", executableJar.toString()));
+        modes.put("classpath", java(jvmOptions, "-cp", classPath, main));
+        modes.put("aot", java(jvmOptions, "-Dspring.aot.enabled=true", "-cp", classPath, main));
+        modes.put("aot+cds", java(jvmOptions, "-XX:SharedArchiveFile=" + cdsArchive, "-Xlog:cds=off", "-Xlog:cds+dynamic=off",
+                "-Dspring.aot.enabled=true", "-cp", classPath, main));
+        Path nativeExecutable = target.resolve("cashcard");
+        if (Files.isExecutable(nativeExecutable)) {
+            modes.put("native", List.of(nativeExecutable.toString()));
+        }
+
+        String authorization = "Basic " + Base64.getEncoder().encodeToString(
+                (BenchmarkApplication.OWNER + ":" + BenchmarkApplication.PASSWORD).getBytes(StandardCharsets.UTF_8));
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+
+        System.out.printf("%n%-10s %18s %10s%n", "mode", "first response ms", "rss MB");
+        for (Map.Entry<String, List<String>> mode : modes.entrySet()) {
+            Run[] results = new Run[runs];
+            for (int i = 0; i < runs; i++) {
+                results[i] = start(mode.getValue(), client, authorization);
+            }
+            long[] millis = Arrays.stream(results).mapToLong(Run::millis).sorted().toArray();
+            long[] rss = Arrays.stream(results).mapToLong(Run::rssKb).sorted().toArray();
+            System.out.printf("%-10s %18d %10d%n", mode.getKey(), millis[runs / 2], rss[runs / 2] / 1024);
+        }
+    }
+
+    private static List<String> java(List<String> jvmOptions, String... arguments) {
+        List<String> command = new ArrayList<>();
+        command.add(ServerProcess.java());
+        command.addAll(jvmOptions);
+        command.addAll(List.of(arguments));
+        return command;
+    }
+
+    private static Run start(List<String> command, HttpClient client, String authorization) throws Exception {
+        int port = ServerProcess.freePort();
+        List<String> withPort = new ArrayList<>(command);
+        withPort.addAll(List.of("--server.port=" + port, "--logging.level.root=WARN", "--spring.main.banner-mode=off"));
+        HttpRequest findById = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/cashcards/1"))
+                .header("Authorization", authorization)
+                .build();
+
+        long start = System.nanoTime();
+        Process server = new ProcessBuilder(withPort).redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+        try {
+            while (System.nanoTime() - start < Duration.ofMinutes(2).toNanos()) {
+                if (!server.isAlive()) {
+                    throw new IllegalStateException("Server exited with " + server.exitValue() + ": " + String.join(" ", withPort));
+                }
+                try {
+                    int status = client.send(findById, HttpResponse.BodyHandlers.discarding()).statusCode();
+                    if (status == 200 || status == 404) {
+                        return new Run(Duration.ofNanos(System.nanoTime() - start).toMillis(), ServerProcess.status(server, "VmRSS:"));
+                    }
+                } catch (IOException notListeningYet) {
+                    // retry
+                }
+                Thread.sleep(10);
+            }
+            throw new IllegalStateException("No response within 2 minutes: " + String.join(" ", withPort));
+        } finally {
+            ServerProcess.stop(server);
+        }
+    }
+}
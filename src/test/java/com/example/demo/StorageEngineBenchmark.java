@@ -0,0 +1,101 @@
+package com.example.demo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+/**
+ * The owner-scoped CashCardRepository methods behind the endpoints, on JPA + H2
+ * (the default) against the in-memory profile's InMemoryCashCardRepository, one
+ * owner with cards CashCards, without the web layer in between.
+ *
+ * keysetSlice starts after a random CashCard, offsetPage reads the page in the
+ * middle of the amount order, rangeSearch a random amount range of width 0.10.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class StorageEngineBenchmark {
+
+    private static final double WIDTH = 0.10;
+
+    @Param({ "jpa", "in-memory" })
+    public String storage;
+
+    @Param({ "10000", "100000" })
+    public int cards;
+
+    private BenchmarkApplication application;
+    private CashCardRepository repository;
+    private final List<CashCardView> cursors = new ArrayList<>();
+    private final Pageable slice = PageRequest.ofSize(20);
+    private Pageable middlePage;
+
+    @Setup(Level.Trial)
+    public void start() {
+        application = (storage.equals("in-memory")
+                ? BenchmarkApplication.start(WebApplicationType.SERVLET, "spring.profiles.active=in-memory")
+                : BenchmarkApplication.start(WebApplicationType.SERVLET))
+                .seed(BenchmarkApplication.OWNER, cards);
+        repository = application.repository();
+        for (int i = 0; i < 1_000; i++) {
+            cursors.add(repository.findViewByIdAndOwner(application.randomId(), BenchmarkApplication.OWNER));
+        }
+        middlePage = PageRequest.of(cards / 20 / 2, 20, Sort.by("amount"));
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        application.close();
+    }
+
+    @Benchmark
+    public Object findViewByIdAndOwner() {
+        return repository.findViewByIdAndOwner(application.randomId(), BenchmarkApplication.OWNER);
+    }
+
+    @Benchmark
+    public Object firstPage() {
+        return repository.findViewsByOwner(BenchmarkApplication.OWNER, PageRequest.of(0, 20, Sort.by("amount"))).getContent();
+    }
+
+    @Benchmark
+    public Object offsetPage() {
+        return repository.findViewsByOwner(BenchmarkApplication.OWNER, middlePage).getContent();
+    }
+
+    @Benchmark
+    public Object keysetSlice() {
+        CashCardView cursor = cursors.get(ThreadLocalRandom.current().nextInt(cursors.size()));
+        return repository.findSliceByOwnerAfter(BenchmarkApplication.OWNER, cursor.amount(), cursor.id(), slice).getContent();
+    }
+
+    @Benchmark
+    public Object rangeSearch() {
+        double from = ThreadLocalRandom.current().nextInt(1, 99_990) / 100.0;
+        return repository.findAscendingByOwnerAndAmountBetween(BenchmarkApplication.OWNER, from, from + WIDTH, Long.MIN_VALUE, slice)
+                .getContent();
+    }
+
+    @Benchmark
+    public Double updateAmountByIdAndOwner() {
+        return repository.updateAmountByIdAndOwner(application.randomId(), BenchmarkApplication.OWNER,
+                ThreadLocalRandom.current().nextInt(1, 100_000) / 100.0);
+    }
+}
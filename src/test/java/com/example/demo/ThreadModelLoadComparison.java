@@ -0,0 +1,81 @@
+package com.example.demo;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import org.springframework.boot.WebApplicationType;
+
+/**
+ * Compares GET /cashcards/{id} throughput and latency of the default
+ * thread-per-request model (Tomcat's platform thread pool) with the virtual
+ * thread mode (the virtual-threads profile) at increasing numbers of
+ * concurrent clients.
+ *
+ * Virtual threads need JDK 21+, on older JDKs both rows run on platform threads.
+ * Run with:
+ * ./mvnw test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.demo.ThreadModelLoadComparison
+ * Optional system properties: clients (default 100,1000,10000), seconds (default 20), cards (default 1000).
+ */
+public class ThreadModelLoadComparison {
+
+    public static void main(String[] args) throws Exception {
+        int[] clientCounts = parse(System.getProperty("clients", "100,1000,10000"));
+        Duration duration = Duration.ofSeconds(Long.getLong("seconds", 20));
+        int cards = Integer.getInteger("cards", 1000);
+
+        if (Runtime.version().feature() < 21) {
+            System.err.println("Running on JDK " + Runtime.version().feature() + ": virtual threads need JDK 21+, both modes will use platform threads");
+        }
+
+        List<LoadDriver.Result> results = new ArrayList<>();
+        for (boolean virtualThreads : new boolean[] { false, true }) {
+            BenchmarkApplication application = BenchmarkApplication.start(WebApplicationType.SERVLET,
+                    virtualThreads ? "spring.profiles.active=virtual-threads" : "spring.threads.virtual.enabled=false",
+                    "server.tomcat.max-connections=20000",
+                    "server.tomcat.accept-count=1000")
+                    .seed(BenchmarkApplication.OWNER, cards);
+            try {
+                int port = application.port();
+                String authorization = "Basic " + Base64.getEncoder().encodeToString(
+                        (BenchmarkApplication.OWNER + ":" + BenchmarkApplication.PASSWORD).getBytes(StandardCharsets.UTF_8));
+                LoadDriver driver = new LoadDriver(HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(30)).build());
+
+                for (int clients : clientCounts) {
+                    String mode = virtualThreads ? "virtual" : "platform";
+                    driver.run("warm-up", clients, Duration.ofSeconds(5), () -> findById(port, authorization, application));
+                    results.add(driver.run(mode, clients, duration, () -> findById(port, authorization, application)));
+                }
+            } finally {
+                application.close();
+            }
+        }
+
+        System.out.printf("%n%-10s %8s %12s %10s %10s %10s%n", "threads", "clients", "requests/s", "p50 ms", "p99 ms", "errors");
+        for (LoadDriver.Result result : results) {
+            System.out.printf("%-10s %8d %12.1f %10.2f %10.2f %10d%n", result.name(), result.clients(), result.throughput(),
+                    result.percentileMillis(50), result.percentileMillis(99), result.errors());
+        }
+    }
+
+    private static HttpRequest findById(int port, String authorization, BenchmarkApplication application) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/cashcards/" + application.randomId()))
+                .header("Authorization", authorization)
+                .timeout(Duration.ofSeconds(60))
+                .build();
+    }
+
+    private static int[] parse(String values) {
+        String[] parts = values.split(",");
+        int[] parsed = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            parsed[i] = Integer.parseInt(parts[i].trim());
+        }
+        return parsed;
+    }
+}